@@ -29,6 +29,12 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    testOptions {
+        unitTests.all {
+            // 微基準測試預設不執行：./gradlew testDebugUnitTest -Pbench
+            it.systemProperty("destiny.bench", project.hasProperty("bench"))
+        }
+    }
 }
 
 dependencies {
@@ -47,9 +53,6 @@ dependencies {
     // 網路請求 (第一頁天氣功能需要)
     implementation("com.android.volley:volley:1.2.1")
 
-    // 本地廣播 (Service 與 Activity 通訊需要)
-    implementation("androidx.localbroadcastmanager:localbroadcastmanager:1.1.0")
-
     // 免費地圖函式庫
     implementation("org.osmdroid:osmdroid-android:6.1.18")
 
@@ -0,0 +1,206 @@
+package com.example.destiny;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 反向地理編碼 (經緯度 → 地區名稱) 的快取
+ *
+ * - 以 geohash 格子為單位快取，同一格只查一次；LRU 保留最近的格子，並存到檔案，下次開 App 也能直接用
+ * - 查詢在共用、有上限的 executor 上執行；同一格同時有多個查詢時只會真的查一次
+ * - 查詢失敗不會寫進快取，下次進入這一格會再試
+ * 可以在任何執行緒上呼叫。
+ */
+public final class AreaNameResolver {
+
+    /**
+     * 實際的查詢 (在 executor 的執行緒上呼叫，可以阻塞)
+     * @return 地區名稱，查不到時為 null
+     */
+    public interface Lookup {
+        String lookup(double latitude, double longitude) throws IOException;
+    }
+
+    public interface Callback {
+        /**
+         * @param name 地區名稱，查詢失敗時為 null
+         */
+        void onAreaName(String cell, String name);
+    }
+
+    public static final int CELL_PRECISION = 6;
+    public static final int DEFAULT_CAPACITY = 512;
+
+    private final Lookup lookup;
+    private final Executor executor;
+    private final File file;
+    private final int capacity;
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<String, String> names;
+    private final Map<String, List<PendingCallback>> inFlight = new HashMap<>();
+
+    private static final class PendingCallback {
+        final Executor executor;
+        final Callback callback;
+
+        PendingCallback(Executor executor, Callback callback) {
+            this.executor = executor;
+            this.callback = callback;
+        }
+    }
+
+    /**
+     * @param file 快取檔案 (null 表示不保存)；會在 executor 上先載入
+     */
+    public AreaNameResolver(Lookup lookup, Executor executor, File file, int capacity) {
+        this.lookup = lookup;
+        this.executor = executor;
+        this.file = file;
+        this.capacity = capacity;
+        this.names = new LinkedHashMap<String, String>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > AreaNameResolver.this.capacity;
+            }
+        };
+        if (file != null) {
+            executor.execute(this::load);
+        }
+    }
+
+    public static String cellOf(double latitude, double longitude) {
+        return Geohash.encode(latitude, longitude, CELL_PRECISION);
+    }
+
+    /**
+     * 取得地區名稱：已經快取時直接回傳；否則回傳 null，查到後在 callbackExecutor 上呼叫 callback
+     */
+    public String resolve(double latitude, double longitude, Executor callbackExecutor, Callback callback) {
+        String cell = cellOf(latitude, longitude);
+        synchronized (lock) {
+            String cached = names.get(cell);
+            if (cached != null) {
+                return cached;
+            }
+            List<PendingCallback> waiting = inFlight.get(cell);
+            if (waiting != null) {
+                waiting.add(new PendingCallback(callbackExecutor, callback));
+                return null;
+            }
+            waiting = new ArrayList<>(2);
+            waiting.add(new PendingCallback(callbackExecutor, callback));
+            inFlight.put(cell, waiting);
+        }
+        try {
+            executor.execute(() -> lookupCell(cell, latitude, longitude));
+        } catch (RejectedExecutionException e) {
+            // 佇列滿了：放棄這一次，下次進入這一格會再查
+            synchronized (lock) {
+                inFlight.remove(cell);
+            }
+        }
+        return null;
+    }
+
+    private void lookupCell(String cell, double latitude, double longitude) {
+        String name;
+        synchronized (lock) {
+            // 等待期間可能已經從檔案載入
+            name = names.get(cell);
+        }
+        boolean fresh = false;
+        if (name == null) {
+            try {
+                name = lookup.lookup(latitude, longitude);
+                fresh = name != null;
+            } catch (IOException e) {
+                name = null;
+            }
+        }
+        List<PendingCallback> waiting;
+        synchronized (lock) {
+            if (fresh) {
+                names.put(cell, name);
+            }
+            waiting = inFlight.remove(cell);
+        }
+        if (fresh) {
+            save();
+        }
+        if (waiting != null) {
+            String result = name;
+            for (PendingCallback pending : waiting) {
+                pending.executor.execute(() -> pending.callback.onAreaName(cell, result));
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return names.size();
+        }
+    }
+
+    /**
+     * 檔案格式：每行一格，"geohash\t地區名稱"，由舊到新
+     */
+    private void load() {
+        if (!file.exists()) return;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            synchronized (lock) {
+                while ((line = reader.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    if (tab <= 0 || tab == line.length() - 1) continue;
+                    String cell = line.substring(0, tab);
+                    // 檔案中較舊的資料不覆蓋載入前已經查到的結果
+                    if (!names.containsKey(cell)) {
+                        names.put(cell, line.substring(tab + 1));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // 快取檔壞掉只是少了快取，重新查詢即可
+        }
+    }
+
+    private void save() {
+        if (file == null) return;
+        List<Map.Entry<String, String>> entries;
+        synchronized (lock) {
+            entries = new ArrayList<>(names.entrySet());
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, String> entry : entries) {
+                writer.write(entry.getKey());
+                writer.write('\t');
+                writer.write(entry.getValue().replace('\t', ' ').replace('\n', ' ').replace('\r', ' '));
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.destiny;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+
+import org.osmdroid.tileprovider.ExpirableBitmapDrawable;
+import org.osmdroid.tileprovider.MapTileProviderBasic;
+import org.osmdroid.tileprovider.tilesource.ITileSource;
+
+/**
+ * 會記錄記憶體快取命中 / 未命中 / 清除次數的 tile provider
+ *
+ * 其餘行為和 MapTileProviderBasic 相同：記憶體快取 → 離線封存檔與磁碟快取 → 網路。
+ */
+public class CountingTileProvider extends MapTileProviderBasic {
+
+    private final TileCacheStats stats;
+
+    public CountingTileProvider(Context context, ITileSource tileSource, TileCacheStats stats) {
+        super(context, tileSource);
+        this.stats = stats;
+        getTileCache().setTileRemovedListener(mapTileIndex -> stats.recordEviction());
+    }
+
+    @Override
+    public Drawable getMapTile(long pMapTileIndex) {
+        Drawable cached = getTileCache().getMapTile(pMapTileIndex);
+        if (cached == null) {
+            stats.recordMiss();
+            return super.getMapTile(pMapTileIndex);
+        }
+        stats.recordHit();
+        if (ExpirableBitmapDrawable.getState(cached) == ExpirableBitmapDrawable.UP_TO_DATE) {
+            // 絕大多數的情況：直接用快取裡的圖磚，不必再查一次
+            return cached;
+        }
+        // 過期的圖磚交給 osmdroid 重新下載 (下載完成前它也會先回傳快取裡的這張)
+        return super.getMapTile(pMapTileIndex);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.destiny;
+
+/**
+ * 爬升 / 下降高度的累計
+ *
+ * 高度先用依時間間隔調整的指數平滑去除雜訊，再用遲滯 (hysteresis) 門檻累計：
+ * 平滑後的高度要離上一個參考點超過門檻，才把差值算進爬升或下降並移動參考點，
+ * 在門檻內來回抖動不會被累計。
+ * 有氣壓計時只使用氣壓高度 (相對變化很準)，沒有時才用 GPS 高度，並使用較大的門檻。
+ */
+public final class ElevationTracker {
+
+    // 平滑的時間常數 (毫秒) 與遲滯門檻 (公尺)
+    private static final double BAROMETER_TIME_CONSTANT_MS = 4000;
+    private static final double BAROMETER_THRESHOLD_METERS = 1.0;
+    private static final double GPS_TIME_CONSTANT_MS = 10000;
+    private static final double GPS_THRESHOLD_METERS = 5.0;
+
+    private boolean usingBarometer = false;
+    private boolean paused = false;
+
+    private boolean hasAltitude = false;
+    private double smoothedAltitude;
+    private long lastTime;
+    private double anchorAltitude;
+
+    private double gain = 0;
+    private double loss = 0;
+
+    /**
+     * 開始一次跑步，清除之前的累計
+     */
+    public void start() {
+        hasAltitude = false;
+        paused = false;
+        gain = 0;
+        loss = 0;
+    }
+
+    /**
+     * 暫停期間不累計；繼續後的第一個高度會重新當作參考點
+     */
+    public void setPaused(boolean paused) {
+        if (this.paused == paused) return;
+        this.paused = paused;
+        if (!paused) {
+            hasAltitude = false;
+        }
+    }
+
+    /**
+     * 氣壓計換算出的高度
+     */
+    public void onBarometerAltitude(long timeMillis, double altitudeMeters) {
+        if (!usingBarometer) {
+            // 第一次拿到氣壓高度時切換來源，兩種高度的基準不同，所以重新開始平滑
+            usingBarometer = true;
+            hasAltitude = false;
+        }
+        onAltitude(timeMillis, altitudeMeters, BAROMETER_TIME_CONSTANT_MS, BAROMETER_THRESHOLD_METERS);
+    }
+
+    /**
+     * GPS 高度，只有在沒有氣壓計時才會使用
+     */
+    public void onGpsAltitude(long timeMillis, double altitudeMeters) {
+        if (usingBarometer) return;
+        onAltitude(timeMillis, altitudeMeters, GPS_TIME_CONSTANT_MS, GPS_THRESHOLD_METERS);
+    }
+
+    private void onAltitude(long timeMillis, double altitude, double timeConstant, double threshold) {
+        if (paused || Double.isNaN(altitude)) return;
+        if (!hasAltitude) {
+            hasAltitude = true;
+            smoothedAltitude = altitude;
+            anchorAltitude = altitude;
+            lastTime = timeMillis;
+            return;
+        }
+        long dt = Math.max(0, timeMillis - lastTime);
+        lastTime = Math.max(lastTime, timeMillis);
+        // 取樣間隔不固定 (批次回報、GPS 間隔變動)，所以平滑係數依 dt 計算
+        double alpha = 1.0 - Math.exp(-dt / timeConstant);
+        smoothedAltitude += alpha * (altitude - smoothedAltitude);
+
+        double delta = smoothedAltitude - anchorAltitude;
+        if (delta >= threshold) {
+            gain += delta;
+            anchorAltitude = smoothedAltitude;
+        } else if (-delta >= threshold) {
+            loss -= delta;
+            anchorAltitude = smoothedAltitude;
+        }
+    }
+
+    public double getGain() {
+        return gain;
+    }
+
+    public double getLoss() {
+        return loss;
+    }
+
+    /**
+     * 平滑後的目前高度，還沒有資料時為 NaN
+     */
+    public double getAltitude() {
+        return hasAltitude ? smoothedAltitude : Double.NaN;
+    }
+
+    public boolean isUsingBarometer() {
+        return usingBarometer;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.destiny;
+
+/**
+ * 定位點清理管線中的一個階段
+ *
+ * 每個階段可以拒絕定位點，或直接修改 Fix 裡的座標 (例如平滑後的位置) 再交給下一個階段。
+ * Fix 物件會被重複使用，階段之間不配置新物件。
+ */
+public interface FixFilter {
+
+    /**
+     * 在管線中傳遞的定位點 (可修改、可重複使用)
+     */
+    final class Fix {
+        public double latitude;
+        public double longitude;
+        // 與 TrackEngine 相同的單調時鐘 (毫秒)
+        public long timeMillis;
+        // 水平精度 (公尺，68% 信賴半徑)
+        public float accuracy;
+
+        public Fix set(double latitude, double longitude, long timeMillis, float accuracy) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.timeMillis = timeMillis;
+            this.accuracy = accuracy;
+            return this;
+        }
+    }
+
+    /**
+     * @return false 表示丟棄這個定位點，後面的階段都不會收到
+     */
+    boolean process(Fix fix);
+
+    /**
+     * 開始新的跑步時清除狀態
+     */
+    void reset();
+}
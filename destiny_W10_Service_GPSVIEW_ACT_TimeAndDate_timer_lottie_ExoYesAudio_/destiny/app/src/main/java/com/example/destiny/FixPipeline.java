@@ -0,0 +1,37 @@
+package com.example.destiny;
+
+/**
+ * 依序執行多個 FixFilter 的管線，任何一個階段拒絕就停止
+ */
+public final class FixPipeline implements FixFilter {
+
+    private final FixFilter[] stages;
+
+    public FixPipeline(FixFilter... stages) {
+        this.stages = stages.clone();
+    }
+
+    /**
+     * 跑步用的預設管線：先剔除不可能的跳點，再用卡爾曼濾波平滑
+     */
+    public static FixPipeline createDefault() {
+        return new FixPipeline(new OutlierRejectionFilter(), new KalmanFixFilter());
+    }
+
+    @Override
+    public boolean process(Fix fix) {
+        for (FixFilter stage : stages) {
+            if (!stage.process(fix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        for (FixFilter stage : stages) {
+            stage.reset();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.destiny;
+
+/**
+ * 直接用 double 計算兩點距離的工具 (取代 Location.distanceTo，不需要建立 Location 物件)
+ *
+ * 短距離 (相鄰定位點) 使用等距圓柱投影，並以該緯度的 WGS84 子午圈 / 卯酉圈曲率半徑修正，
+ * 與 distanceTo (Vincenty 橢球解) 的相對誤差在 1e-5 以內；
+ * 長距離使用 haversine 球面公式，相對誤差約在 0.6% 以內。
+ * 誤差與速度的量測見 GeoDistanceTest 與 GeoDistanceBenchmark。
+ */
+public final class GeoDistance {
+
+    // 平均地球半徑 (公尺)，haversine 使用
+    public static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    // WGS84 橢球參數
+    private static final double WGS84_A = 6378137.0;
+    private static final double WGS84_E2 = 6.69437999014e-3;
+
+    // 經緯度差都小於這個值 (約 1 公里) 時使用等距圓柱近似
+    private static final double SHORT_HOP_DEGREES = 0.01;
+
+    private GeoDistance() {
+    }
+
+    /**
+     * 兩點距離 (公尺)，依距離自動選擇演算法
+     */
+    public static double distance(double lat1, double lon1, double lat2, double lon2) {
+        if (Math.abs(lat2 - lat1) < SHORT_HOP_DEGREES && Math.abs(lon2 - lon1) < SHORT_HOP_DEGREES) {
+            return equirectangular(lat1, lon1, lat2, lon2);
+        }
+        return haversine(lat1, lon1, lat2, lon2);
+    }
+
+    /**
+     * 短距離近似：在兩點的平均緯度上，用橢球的曲率半徑把經緯度差換算成公尺
+     */
+    public static double equirectangular(double lat1, double lon1, double lat2, double lon2) {
+        double phi = Math.toRadians((lat1 + lat2) * 0.5);
+        double sinPhi = Math.sin(phi);
+        double w = 1.0 - WGS84_E2 * sinPhi * sinPhi;
+        double sqrtW = Math.sqrt(w);
+        // 卯酉圈曲率半徑 N 與子午圈曲率半徑 M
+        double n = WGS84_A / sqrtW;
+        double m = n * (1.0 - WGS84_E2) / w;
+        double dy = Math.toRadians(lat2 - lat1) * m;
+        double dx = Math.toRadians(lon2 - lon1) * n * Math.cos(phi);
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * 大圓距離 (haversine)，單位公尺
+     */
+    public static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double sinPhi = Math.sin((phi2 - phi1) * 0.5);
+        double sinLambda = Math.sin(Math.toRadians(lon2 - lon1) * 0.5);
+        double a = sinPhi * sinPhi + Math.cos(phi1) * Math.cos(phi2) * sinLambda * sinLambda;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /**
+     * 整段軌跡的累積距離
+     * @param out 如果不是 null，out[i] 會填入從第 0 點到第 i 點的累積距離 (長度至少為 count)
+     * @return 總距離 (公尺)
+     */
+    public static double cumulative(double[] latitudes, double[] longitudes, int count, double[] out) {
+        if (count <= 0) return 0;
+        double total = 0;
+        if (out != null) out[0] = 0;
+        for (int i = 1; i < count; i++) {
+            total += distance(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+            if (out != null) out[i] = total;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.destiny;
+
+import android.content.Context;
+import android.location.Address;
+import android.location.Geocoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用 Android Geocoder 查「縣市 區域」，並提供整個 App 共用的 AreaNameResolver
+ *
+ * Activity 與 Service 都透過 sharedResolver() 查詢，共用同一份快取與同一條查詢執行緒，
+ * 不再每次查詢都開新的 Thread。
+ */
+public class GeocoderLookup implements AreaNameResolver.Lookup {
+
+    private static final String CACHE_FILE_NAME = "area_names.tsv";
+    // Geocoder 是阻塞的網路呼叫，一條執行緒就夠；佇列滿了就放棄 (進入下一格時會再查)
+    private static final int MAX_QUEUED_LOOKUPS = 8;
+    private static final long IDLE_KEEP_ALIVE_SECONDS = 30;
+
+    private static AreaNameResolver sharedResolver;
+
+    private final Geocoder geocoder;
+
+    public GeocoderLookup(Context context) {
+        geocoder = new Geocoder(context.getApplicationContext(), Locale.TAIWAN);
+    }
+
+    public static synchronized AreaNameResolver sharedResolver(Context context) {
+        if (sharedResolver == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                    IDLE_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(MAX_QUEUED_LOOKUPS),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "AreaNameLookup");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            // 沒有查詢時讓執行緒結束，不常駐
+            executor.allowCoreThreadTimeOut(true);
+            Context appContext = context.getApplicationContext();
+            sharedResolver = new AreaNameResolver(new GeocoderLookup(appContext), executor,
+                    new File(appContext.getFilesDir(), CACHE_FILE_NAME), AreaNameResolver.DEFAULT_CAPACITY);
+        }
+        return sharedResolver;
+    }
+
+    @Override
+    public String lookup(double latitude, double longitude) throws IOException {
+        // 沒有 Geocoder 實作的裝置 (例如沒有 Play 服務) 直接放棄，不必等它丟出 IOException
+        if (!Geocoder.isPresent()) {
+            return null;
+        }
+        List<Address> addresses = geocoder.getFromLocation(latitude, longitude, 1);
+        if (addresses == null || addresses.isEmpty()) {
+            return null;
+        }
+        Address address = addresses.get(0);
+        String city = address.getAdminArea();
+        String district = address.getLocality();
+        StringBuilder nameBuilder = new StringBuilder();
+        if (city != null) nameBuilder.append(city);
+        if (district != null) nameBuilder.append(" ").append(district);
+        // 沒有地名時回傳 null 而不是「未知區域」，才不會被永久快取在這一格
+        return nameBuilder.length() > 0 ? nameBuilder.toString() : null;
+    }
+}
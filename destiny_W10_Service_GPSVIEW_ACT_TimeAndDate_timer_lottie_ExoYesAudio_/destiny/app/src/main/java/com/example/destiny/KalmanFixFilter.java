@@ -0,0 +1,121 @@
+package com.example.destiny;
+
+/**
+ * 等速模型的卡爾曼濾波，量測誤差使用定位點的精度 (getAccuracy)
+ *
+ * 以第一個點為原點換算成區域平面座標 (公尺)，東西與南北兩軸各自是 [位置, 速度] 的二維狀態，
+ * 精度越差的點影響越小。輸出平滑後的位置，取代固定距離門檻的去雜訊方式。
+ */
+public final class KalmanFixFilter implements FixFilter {
+
+    // 加速度的過程雜訊 (公尺/秒^2)^2，跑步時的加減速大約在 1 m/s^2 以內
+    public static final double DEFAULT_ACCELERATION_VARIANCE = 0.5;
+    // 初始速度的不確定性 (公尺/秒)^2
+    private static final double INITIAL_VELOCITY_VARIANCE = 25.0;
+    private static final double METERS_PER_DEGREE = Math.toRadians(1) * GeoDistance.EARTH_RADIUS_METERS;
+
+    private final double accelerationVariance;
+
+    private boolean initialized = false;
+    private double originLatitude;
+    private double originLongitude;
+    private double metersPerDegreeLongitude;
+    private long lastTime;
+
+    private final Axis east = new Axis();
+    private final Axis north = new Axis();
+
+    public KalmanFixFilter() {
+        this(DEFAULT_ACCELERATION_VARIANCE);
+    }
+
+    public KalmanFixFilter(double accelerationVariance) {
+        this.accelerationVariance = accelerationVariance;
+    }
+
+    @Override
+    public boolean process(Fix fix) {
+        double variance = Math.max(fix.accuracy, 1f);
+        variance *= variance;
+        if (!initialized) {
+            initialized = true;
+            originLatitude = fix.latitude;
+            originLongitude = fix.longitude;
+            metersPerDegreeLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(fix.latitude));
+            lastTime = fix.timeMillis;
+            east.init(0, variance);
+            north.init(0, variance);
+            return true;
+        }
+
+        double dt = Math.max(fix.timeMillis - lastTime, 0) / 1000.0;
+        lastTime = Math.max(lastTime, fix.timeMillis);
+        double x = (fix.longitude - originLongitude) * metersPerDegreeLongitude;
+        double y = (fix.latitude - originLatitude) * METERS_PER_DEGREE;
+        east.predict(dt, accelerationVariance);
+        north.predict(dt, accelerationVariance);
+        east.update(x, variance);
+        north.update(y, variance);
+
+        fix.longitude = originLongitude + east.position / metersPerDegreeLongitude;
+        fix.latitude = originLatitude + north.position / METERS_PER_DEGREE;
+        // 平滑後的不確定性 (位置變異數的平方根)
+        fix.accuracy = (float) Math.sqrt(Math.max(east.p00, north.p00));
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        initialized = false;
+    }
+
+    /**
+     * 目前估計的速度 (公尺/秒)，還沒有資料時為 0
+     */
+    public double getSpeed() {
+        return initialized ? Math.hypot(east.velocity, north.velocity) : 0;
+    }
+
+    /**
+     * 單一軸的 [位置, 速度] 狀態與 2x2 共變異數 (對稱，所以只存三個值)
+     */
+    private static final class Axis {
+        double position;
+        double velocity;
+        double p00;
+        double p01;
+        double p11;
+
+        void init(double z, double variance) {
+            position = z;
+            velocity = 0;
+            p00 = variance;
+            p01 = 0;
+            p11 = INITIAL_VELOCITY_VARIANCE;
+        }
+
+        void predict(double dt, double q) {
+            position += velocity * dt;
+            double dt2 = dt * dt;
+            // P = F P F^T + Q，Q 為白雜訊加速度模型
+            p00 += 2 * dt * p01 + dt2 * p11 + q * dt2 * dt2 / 4;
+            p01 += dt * p11 + q * dt2 * dt / 2;
+            p11 += q * dt2;
+        }
+
+        void update(double z, double r) {
+            double s = p00 + r;
+            double k0 = p00 / s;
+            double k1 = p01 / s;
+            double innovation = z - position;
+            position += k0 * innovation;
+            velocity += k1 * innovation;
+            double newP00 = (1 - k0) * p00;
+            double newP01 = (1 - k0) * p01;
+            double newP11 = p11 - k1 * p01;
+            p00 = newP00;
+            p01 = newP01;
+            p11 = newP11;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.destiny;
+
+import android.os.Process;
+
+import org.osmdroid.tileprovider.modules.IFilesystemCache;
+import org.osmdroid.tileprovider.modules.SqlTileWriter;
+import org.osmdroid.tileprovider.tilesource.OnlineTileSourceBase;
+import org.osmdroid.util.MapTileIndex;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+
+/**
+ * TilePrefetcher 用的下載器：把圖磚下載進 osmdroid 的 SQLite 快取，地圖之後直接從快取拿
+ *
+ * 每個 fetch() 都在 TilePrefetcher 的背景執行緒上執行，各自有自己的暫存區。
+ * 快取的讀寫與 close() 用同一把鎖，關閉資料庫時不會有寫到一半的圖磚。
+ */
+public class OsmdroidTileFetcher implements TilePrefetcher.TileFetcher {
+
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int READ_TIMEOUT_MS = 15_000;
+    private static final long CACHE_EXPIRATION_MS = 7L * 24 * 60 * 60 * 1000;
+
+    private final OnlineTileSourceBase tileSource;
+    private final String urlTemplate;
+    private final String userAgent;
+    private final IFilesystemCache cache = new SqlTileWriter();
+    private boolean closed = false;
+    private final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[32 * 1024];
+        }
+    };
+
+    private OsmdroidTileFetcher(OnlineTileSourceBase tileSource, String urlTemplate, String userAgent) {
+        this.tileSource = tileSource;
+        this.urlTemplate = urlTemplate;
+        this.userAgent = userAgent;
+    }
+
+    /**
+     * @param urlTemplate 允許預先下載的圖磚伺服器 ({z}/{x}/{y})，空白時直接使用圖源本身
+     * @return 圖源不允許預先下載 (例如 OSM 的公用伺服器) 又沒有其他伺服器時為 null
+     */
+    public static OsmdroidTileFetcher create(OnlineTileSourceBase tileSource, String urlTemplate, String userAgent) {
+        boolean hasTemplate = urlTemplate != null && !urlTemplate.isEmpty();
+        if (!hasTemplate && !tileSource.getTileSourcePolicy().acceptsPreventive()) {
+            return null;
+        }
+        return new OsmdroidTileFetcher(tileSource, hasTemplate ? urlTemplate : null, userAgent);
+    }
+
+    @Override
+    public long fetch(int zoom, int x, int y) {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        long index = MapTileIndex.getTileIndex(zoom, x, y);
+        synchronized (cache) {
+            if (closed) {
+                return -1;
+            }
+            if (cache.exists(tileSource, index)) {
+                return 0;
+            }
+        }
+        String url = urlTemplate == null ? tileSource.getTileURLString(index)
+                : urlTemplate.replace("{z}", Integer.toString(zoom))
+                        .replace("{x}", Integer.toString(x))
+                        .replace("{y}", Integer.toString(y));
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setRequestProperty("User-Agent", userAgent);
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                return -1;
+            }
+            byte[] buffer = buffers.get();
+            int length = 0;
+            try (InputStream in = connection.getInputStream()) {
+                int read;
+                while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+                    length += read;
+                    if (length == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                        buffers.set(buffer);
+                    }
+                }
+            }
+            synchronized (cache) {
+                if (closed) {
+                    return -1;
+                }
+                boolean saved = cache.saveFile(tileSource, index, new ByteArrayInputStream(buffer, 0, length),
+                        System.currentTimeMillis() + CACHE_EXPIRATION_MS);
+                return saved ? length : -1;
+            }
+        } catch (IOException e) {
+            return -1;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * 關閉快取的資料庫連線 (TilePrefetcher.stop() 時呼叫)，之後的 fetch() 都回傳失敗
+     */
+    @Override
+    public void close() {
+        synchronized (cache) {
+            if (closed) return;
+            closed = true;
+            cache.onDetach();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.destiny;
+
+/**
+ * 依速度剔除跳點 (例如高樓間的多路徑反射造成的數百公尺跳動)
+ *
+ * 扣掉精度範圍後，與上一個接受的點之間的速度仍超過上限就丟棄；
+ * 精度太差的點也直接丟棄。連續丟棄太多次時代表位置真的改變了 (例如出隧道)，
+ * 會重新以目前的點為準。
+ */
+public final class OutlierRejectionFilter implements FixFilter {
+
+    // 跑步不可能超過的速度 (公尺/秒)
+    public static final double DEFAULT_MAX_SPEED_MPS = 12.0;
+    public static final float DEFAULT_MAX_ACCURACY_METERS = 100f;
+    private static final int MAX_CONSECUTIVE_REJECTS = 5;
+
+    private final double maxSpeed;
+    private final float maxAccuracy;
+
+    private boolean hasLast = false;
+    private double lastLatitude;
+    private double lastLongitude;
+    private long lastTime;
+    private int consecutiveRejects = 0;
+
+    public OutlierRejectionFilter() {
+        this(DEFAULT_MAX_SPEED_MPS, DEFAULT_MAX_ACCURACY_METERS);
+    }
+
+    public OutlierRejectionFilter(double maxSpeedMps, float maxAccuracyMeters) {
+        this.maxSpeed = maxSpeedMps;
+        this.maxAccuracy = maxAccuracyMeters;
+    }
+
+    @Override
+    public boolean process(Fix fix) {
+        if (fix.accuracy > maxAccuracy) {
+            return false;
+        }
+        if (hasLast && consecutiveRejects < MAX_CONSECUTIVE_REJECTS) {
+            double seconds = Math.max(fix.timeMillis - lastTime, 1) / 1000.0;
+            double distance = GeoDistance.distance(lastLatitude, lastLongitude, fix.latitude, fix.longitude);
+            // 精度範圍內的移動都有可能只是誤差，不算進速度
+            double speed = Math.max(0, distance - fix.accuracy) / seconds;
+            if (speed > maxSpeed) {
+                consecutiveRejects++;
+                return false;
+            }
+        }
+        hasLast = true;
+        lastLatitude = fix.latitude;
+        lastLongitude = fix.longitude;
+        lastTime = fix.timeMillis;
+        consecutiveRejects = 0;
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        hasLast = false;
+        consecutiveRejects = 0;
+    }
+}
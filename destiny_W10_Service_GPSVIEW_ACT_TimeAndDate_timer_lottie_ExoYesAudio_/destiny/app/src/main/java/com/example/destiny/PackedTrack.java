@@ -0,0 +1,98 @@
+package com.example.destiny;
+
+import java.util.Arrays;
+
+/**
+ * 緊湊的座標序列
+ *
+ * 緯度 / 經度以 E7 (度 × 10^7) 的 int 存放在可成長的基本型別陣列裡，
+ * 每個點只佔 8 bytes，也不會像 List&lt;GeoPoint&gt; 那樣每個點都是一個物件。
+ * E7 的解析度約 1.1 公分，對畫地圖和簡化軌跡都綽綽有餘。
+ */
+public final class PackedTrack {
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 256;
+    private static final double E7 = 1e7;
+
+    private int[] latitudesE7;
+    private int[] longitudesE7;
+    private int size = 0;
+
+    public PackedTrack() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public PackedTrack(int initialCapacity) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("initialCapacity must be positive: " + initialCapacity);
+        }
+        latitudesE7 = new int[initialCapacity];
+        longitudesE7 = new int[initialCapacity];
+    }
+
+    public void add(double latitude, double longitude) {
+        ensureCapacity(size + 1);
+        latitudesE7[size] = toE7(latitude);
+        longitudesE7[size] = toE7(longitude);
+        size++;
+    }
+
+    /**
+     * 一次複製 source 中 [from, to) 的點到最後面 (整段陣列複製，不逐點轉換)
+     */
+    public void addRange(PackedTrack source, int from, int to) {
+        if (from < 0 || to > source.size || from > to) {
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to + ") (size=" + source.size + ")");
+        }
+        int count = to - from;
+        ensureCapacity(size + count);
+        System.arraycopy(source.latitudesE7, from, latitudesE7, size, count);
+        System.arraycopy(source.longitudesE7, from, longitudesE7, size, count);
+        size += count;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= latitudesE7.length) {
+            return;
+        }
+        int capacity = Math.max(required, latitudesE7.length * 2);
+        latitudesE7 = Arrays.copyOf(latitudesE7, capacity);
+        longitudesE7 = Arrays.copyOf(longitudesE7, capacity);
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getLatitude(int index) {
+        return getLatitudeE7(index) / E7;
+    }
+
+    public double getLongitude(int index) {
+        return getLongitudeE7(index) / E7;
+    }
+
+    public int getLatitudeE7(int index) {
+        checkIndex(index);
+        return latitudesE7[index];
+    }
+
+    public int getLongitudeE7(int index) {
+        checkIndex(index);
+        return longitudesE7[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("point " + index + " (size=" + size + ")");
+        }
+    }
+
+    static int toE7(double degrees) {
+        return (int) Math.round(degrees * E7);
+    }
+}
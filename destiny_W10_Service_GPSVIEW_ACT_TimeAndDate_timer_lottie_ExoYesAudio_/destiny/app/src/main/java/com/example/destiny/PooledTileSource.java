@@ -0,0 +1,128 @@
+package com.example.destiny;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+
+import org.osmdroid.tileprovider.BitmapPool;
+import org.osmdroid.tileprovider.ExpirableBitmapDrawable;
+import org.osmdroid.tileprovider.ReusableBitmapDrawable;
+import org.osmdroid.tileprovider.tilesource.TileSourcePolicy;
+import org.osmdroid.tileprovider.tilesource.XYTileSource;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * OSM Mapnik 圖源，但圖磚依 TileMemoryPolicy 的格式解碼，並盡量重複使用 osmdroid BitmapPool 裡的 bitmap
+ *
+ * 名稱、網址與使用政策都和 TileSourceFactory.MAPNIK 相同，原本的磁碟快取與離線封存檔都可以直接沿用。
+ * 被記憶體快取清除的圖磚 (ReusableBitmapDrawable) 會由 osmdroid 放回 BitmapPool，下一次解碼時當作 inBitmap。
+ */
+public class PooledTileSource extends XYTileSource {
+
+    private final TileMemoryPolicy.DecodeMode decodeMode;
+    private final TileCacheStats stats;
+    // 解碼在 osmdroid 的多條下載 / 讀檔執行緒上進行，每條執行緒各自一個讀取暫存區
+    private final ThreadLocal<byte[]> readBuffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[32 * 1024];
+        }
+    };
+
+    public PooledTileSource(TileMemoryPolicy.DecodeMode decodeMode, TileCacheStats stats) {
+        super("Mapnik", 0, 19, TileMemoryPolicy.TILE_SIZE_PIXELS, ".png",
+                new String[]{
+                        "https://a.tile.openstreetmap.org/",
+                        "https://b.tile.openstreetmap.org/",
+                        "https://c.tile.openstreetmap.org/"},
+                "© OpenStreetMap contributors",
+                new TileSourcePolicy(2,
+                        TileSourcePolicy.FLAG_NO_BULK
+                                | TileSourcePolicy.FLAG_NO_PREVENTIVE
+                                | TileSourcePolicy.FLAG_USER_AGENT_MEANINGFUL
+                                | TileSourcePolicy.FLAG_USER_AGENT_NORMALIZED));
+        this.decodeMode = decodeMode;
+        this.stats = stats;
+    }
+
+    @Override
+    public Drawable getDrawable(String aFilePath) throws LowMemoryException {
+        try (InputStream in = new FileInputStream(aFilePath)) {
+            return getDrawable(in);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Drawable getDrawable(InputStream aFileInputStream) throws LowMemoryException {
+        try {
+            // 先讀進暫存區：inBitmap 不相容時才能不用 pool 重新解碼一次
+            byte[] data = readBuffers.get();
+            int length = 0;
+            int read;
+            while ((read = aFileInputStream.read(data, length, data.length - length)) != -1) {
+                length += read;
+                if (length == data.length) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                    readBuffers.set(data);
+                }
+            }
+            return decode(data, length);
+        } catch (IOException e) {
+            return null;
+        } catch (OutOfMemoryError e) {
+            System.gc();
+            throw new LowMemoryException(e);
+        }
+    }
+
+    private Drawable decode(byte[] data, int length) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        if (decodeMode == TileMemoryPolicy.DecodeMode.HARDWARE && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            // hardware bitmap 不能當 inBitmap，也不能放回 pool
+            options.inPreferredConfig = Bitmap.Config.HARDWARE;
+            Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, length, options);
+            stats.recordDecode(false);
+            return bitmap == null ? null : new ExpirableBitmapDrawable(bitmap);
+        }
+
+        options.inPreferredConfig = decodeMode == TileMemoryPolicy.DecodeMode.RGB_565
+                ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        options.inMutable = true;
+        int size = getTileSizePixels();
+        Bitmap reusable = BitmapPool.getInstance().obtainSizedBitmapFromPool(size, size);
+        Bitmap bitmap = null;
+        if (reusable != null) {
+            options.inBitmap = reusable;
+            try {
+                bitmap = BitmapFactory.decodeByteArray(data, 0, length, options);
+            } catch (IllegalArgumentException e) {
+                // pool 裡的 bitmap 太小 (例如 RGB_565 的 bitmap 拿來解 ARGB_8888)，改配置新的
+                options.inBitmap = null;
+            }
+            if (bitmap == null) {
+                // 沒用上的 bitmap 一定要放回 pool，否則記憶體吃緊時 pool 會越用越少
+                BitmapPool.getInstance().returnDrawableToPool(new ReusableBitmapDrawable(reusable));
+                if (options.inBitmap != null) {
+                    // 解碼沒有丟出例外卻回傳 null：圖磚本身壞了，不必再解一次
+                    return null;
+                }
+            }
+        }
+        boolean reused = bitmap != null;
+        if (bitmap == null) {
+            bitmap = BitmapFactory.decodeByteArray(data, 0, length, options);
+        }
+        if (bitmap == null) {
+            return null;
+        }
+        stats.recordDecode(reused);
+        return new ReusableBitmapDrawable(bitmap);
+    }
+}
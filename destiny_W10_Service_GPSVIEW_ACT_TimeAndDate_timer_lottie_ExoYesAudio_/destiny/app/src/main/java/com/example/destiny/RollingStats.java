@@ -0,0 +1,224 @@
+package com.example.destiny;
+
+import java.util.Arrays;
+
+/**
+ * 即時配速統計
+ *
+ * 每次距離增加時呼叫 onProgress()，全部都是攤銷 O(1)：
+ *   - 目前配速：最近 windowMillis 內的 (時間, 距離) 存在環狀 deque，過期的點從前端移除
+ *   - 移動平均：配速的指數移動平均 (EMA)
+ *   - 最佳 1 公里：另一個 deque 只保留最近 1 公里的點，內插出 1 公里前的時間
+ *   - 配速區間：每一段的時間累加到固定的 long[] 桶子裡
+ * 不需要回頭掃描整條軌跡。
+ */
+public final class RollingStats {
+
+    public static final long DEFAULT_WINDOW_MILLIS = 30_000;
+    public static final double BEST_DISTANCE_METERS = 1000.0;
+    // 配速區間的上界 (秒/公里)：<4:00、4-5、5-6、6-7、7-8、>8:00
+    public static final int[] ZONE_LIMITS_SEC_PER_KM = {240, 300, 360, 420, 480};
+
+    // 視窗內距離太短 (例如停在紅綠燈) 時不顯示配速
+    private static final double MIN_WINDOW_METERS = 10.0;
+    private static final double PACE_SMOOTHING = 0.2;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final long windowMillis;
+
+    private final Deque window = new Deque(INITIAL_CAPACITY);
+    private final Deque lastKm = new Deque(INITIAL_CAPACITY);
+
+    private boolean hasLast = false;
+    private double lastDistance;
+    private long lastElapsed;
+
+    private double currentPace = Double.NaN;
+    private double smoothedPace = Double.NaN;
+    private long bestKmMillis = -1;
+    private final long[] zoneMillis = new long[ZONE_LIMITS_SEC_PER_KM.length + 1];
+
+    public RollingStats() {
+        this(DEFAULT_WINDOW_MILLIS);
+    }
+
+    public RollingStats(long windowMillis) {
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("windowMillis must be positive: " + windowMillis);
+        }
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * 開始一次跑步 (從暫停中繼續時，之前的統計不會保留)
+     */
+    public void start(double distanceOffset, long elapsedOffset) {
+        window.clear();
+        lastKm.clear();
+        hasLast = false;
+        currentPace = Double.NaN;
+        smoothedPace = Double.NaN;
+        bestKmMillis = -1;
+        Arrays.fill(zoneMillis, 0);
+        onProgress(distanceOffset, elapsedOffset);
+    }
+
+    /**
+     * 距離增加時呼叫
+     * @param distance 累計距離 (公尺)
+     * @param elapsedMillis 跑步經過時間 (不含暫停)
+     */
+    public void onProgress(double distance, long elapsedMillis) {
+        long elapsed = hasLast ? Math.max(elapsedMillis, lastElapsed) : elapsedMillis;
+        if (hasLast) {
+            double meters = distance - lastDistance;
+            long millis = elapsed - lastElapsed;
+            if (meters > 0 && millis > 0) {
+                zoneMillis[zoneOf(millis / meters)] += millis;
+            }
+        }
+        hasLast = true;
+        lastDistance = distance;
+        lastElapsed = elapsed;
+
+        // 目前配速：移除超出時間視窗的點，但至少保留一個點當作起點
+        window.addLast(distance, elapsed);
+        while (window.size() > 2 && elapsed - window.timeAt(1) >= windowMillis) {
+            window.removeFirst();
+        }
+        double windowMeters = distance - window.distanceAt(0);
+        if (windowMeters >= MIN_WINDOW_METERS) {
+            currentPace = (elapsed - window.timeAt(0)) / windowMeters;
+            smoothedPace = Double.isNaN(smoothedPace) ? currentPace
+                    : smoothedPace + PACE_SMOOTHING * (currentPace - smoothedPace);
+        } else {
+            currentPace = Double.NaN;
+        }
+
+        // 最佳 1 公里：保留最後一個 <= (distance - 1 公里) 的點，用它和下一個點內插
+        lastKm.addLast(distance, elapsed);
+        double target = distance - BEST_DISTANCE_METERS;
+        while (lastKm.size() > 2 && lastKm.distanceAt(1) <= target) {
+            lastKm.removeFirst();
+        }
+        if (lastKm.size() >= 2 && lastKm.distanceAt(0) <= target) {
+            double d0 = lastKm.distanceAt(0);
+            double d1 = lastKm.distanceAt(1);
+            long t0 = lastKm.timeAt(0);
+            long t1 = lastKm.timeAt(1);
+            double crossing = d1 > d0 ? t0 + (target - d0) / (d1 - d0) * (t1 - t0) : t1;
+            long kmMillis = Math.round(elapsed - crossing);
+            if (bestKmMillis < 0 || kmMillis < bestKmMillis) {
+                bestKmMillis = kmMillis;
+            }
+        }
+    }
+
+    private static int zoneOf(double millisPerMeter) {
+        // 毫秒/公尺 剛好等於 秒/公里
+        for (int i = 0; i < ZONE_LIMITS_SEC_PER_KM.length; i++) {
+            if (millisPerMeter < ZONE_LIMITS_SEC_PER_KM[i]) return i;
+        }
+        return ZONE_LIMITS_SEC_PER_KM.length;
+    }
+
+    /**
+     * 時間視窗內的配速 (秒/公里)，資料不足時為 NaN
+     */
+    public double getCurrentPace() {
+        return currentPace;
+    }
+
+    /**
+     * 同 getCurrentPace()，但整個視窗內都沒有前進 (例如停下來) 時回傳 NaN
+     * @param elapsedMillis 目前的跑步經過時間
+     */
+    public double getCurrentPace(long elapsedMillis) {
+        return elapsedMillis - lastElapsed > windowMillis ? Double.NaN : currentPace;
+    }
+
+    /**
+     * 配速的移動平均 (秒/公里)，資料不足時為 NaN
+     */
+    public double getSmoothedPace() {
+        return smoothedPace;
+    }
+
+    /**
+     * 本次跑步中最快的連續 1 公里 (毫秒)，還沒跑滿 1 公里時為 -1
+     */
+    public long getBestKmMillis() {
+        return bestKmMillis;
+    }
+
+    public int getZoneCount() {
+        return zoneMillis.length;
+    }
+
+    public long getZoneMillis(int zone) {
+        return zoneMillis[zone];
+    }
+
+    public long[] copyZoneMillis() {
+        return zoneMillis.clone();
+    }
+
+    /**
+     * 以基本型別陣列實作的環狀 deque (容量不足時加倍)
+     */
+    private static final class Deque {
+        private double[] distances;
+        private long[] times;
+        private int head = 0;
+        private int size = 0;
+
+        Deque(int capacity) {
+            distances = new double[capacity];
+            times = new long[capacity];
+        }
+
+        void addLast(double distance, long time) {
+            if (size == distances.length) {
+                grow();
+            }
+            int index = (head + size) % distances.length;
+            distances[index] = distance;
+            times[index] = time;
+            size++;
+        }
+
+        void removeFirst() {
+            head = (head + 1) % distances.length;
+            size--;
+        }
+
+        double distanceAt(int i) {
+            return distances[(head + i) % distances.length];
+        }
+
+        long timeAt(int i) {
+            return times[(head + i) % distances.length];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+
+        private void grow() {
+            double[] newDistances = new double[distances.length * 2];
+            long[] newTimes = new long[times.length * 2];
+            for (int i = 0; i < size; i++) {
+                newDistances[i] = distanceAt(i);
+                newTimes[i] = timeAt(i);
+            }
+            distances = newDistances;
+            times = newTimes;
+            head = 0;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.destiny;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Point;
+
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+import org.osmdroid.views.MapView;
+import org.osmdroid.views.Projection;
+import org.osmdroid.views.overlay.Overlay;
+
+/**
+ * 跑步路線的地圖圖層 (取代 osmdroid 的 Polyline)
+ *
+ * - 預先維護好幾個精細度 (LOD) 的簡化軌跡，依目前縮放等級挑一個誤差小於一個像素的來畫
+ * - 座標都存在 PackedTrack 裡，直接逐點讀取，畫的時候不會為每個頂點配置 GeoPoint
+ * - 已確定的頂點以 Web Mercator 座標 (相對於第一個頂點) 快取在 Path 裡，每一幀只補上新接上的頂點；
+ *   平移 / 縮放 / 旋轉時用 canvas 的 translate / rotate / scale 套到畫面上，不必重新投影每個頂點
+ * - 只有換了 LOD 或清除路線時才重建快取的 Path
+ * 所有方法都必須在主執行緒上呼叫。
+ */
+public class RouteOverlay extends Overlay {
+
+    // 各 LOD 的容許誤差 (公尺)，第 0 層就是收到的所有頂點
+    private static final double[] LEVEL_TOLERANCES_METERS = {0, 20, 80, 320};
+    private static final int LEVEL_MAX_LOOKAHEAD = 64;
+    private static final double EARTH_CIRCUMFERENCE_METERS = 2 * Math.PI * 6378137.0;
+    // 快取 Path 的座標單位：整個世界 2^28 單位 (約等於 zoom 20)，相對於原點存放，float 的精度足夠
+    private static final double PATH_WORLD_SIZE = 1 << 28;
+    // Web Mercator 能表示的緯度範圍，和 osmdroid 的 TileSystem 相同
+    private static final double MAX_LATITUDE = 85.05112877980659;
+
+    private final PackedTrack fullTrack = new PackedTrack();
+    // 第 1 層之後的 LOD (coarseLevels[i] 對應第 i + 1 層)
+    private final StreamingSimplifier[] coarseLevels = new StreamingSimplifier[LEVEL_TOLERANCES_METERS.length - 1];
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final float widthPixels;
+    // 最後一個頂點 → tail → 目前位置，每一幀以畫面座標重畫
+    private final Path tailPath = new Path();
+    // 座標轉換時重複使用，不在每一幀配置物件
+    private final GeoPoint reusableGeoPoint = new GeoPoint(0.0, 0.0);
+    private final Point reusablePoint = new Point();
+
+    // 快取的路線 (Mercator 座標，原點是第一個頂點) 以及它對應的 LOD 與已加入的頂點數
+    private final Path routePath = new Path();
+    private int cachedLevel = -1;
+    private int cachedVertexCount = 0;
+    private double originLatitude;
+    private double originLongitude;
+    private double originX;
+    private double originY;
+
+    private boolean hasLiveTail = false;
+    private double liveTailLatitude;
+    private double liveTailLongitude;
+
+    public RouteOverlay(int color, float widthPixels) {
+        for (int i = 0; i < coarseLevels.length; i++) {
+            coarseLevels[i] = new StreamingSimplifier(LEVEL_TOLERANCES_METERS[i + 1], LEVEL_MAX_LOOKAHEAD);
+        }
+        this.widthPixels = widthPixels;
+        paint.setColor(color);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+    }
+
+    /**
+     * 接上一個已確定的頂點 (所有 LOD 都會同步更新)
+     */
+    public void addVertex(double latitude, double longitude) {
+        fullTrack.add(latitude, longitude);
+        for (StreamingSimplifier level : coarseLevels) {
+            level.add(latitude, longitude, 0);
+        }
+    }
+
+    /**
+     * 一次接上多個頂點 (重新連上 Service 時用來還原整條路線)
+     */
+    public void addVertices(PackedTrack vertices) {
+        int start = fullTrack.size();
+        fullTrack.addRange(vertices, 0, vertices.size());
+        for (int i = start; i < fullTrack.size(); i++) {
+            double latitude = fullTrack.getLatitude(i);
+            double longitude = fullTrack.getLongitude(i);
+            for (StreamingSimplifier level : coarseLevels) {
+                level.add(latitude, longitude, 0);
+            }
+        }
+    }
+
+    /**
+     * 最新位置 (還沒成為頂點的那一段)，每次更新都會直接畫，不進快取
+     */
+    public void setLiveTail(double latitude, double longitude) {
+        hasLiveTail = true;
+        liveTailLatitude = latitude;
+        liveTailLongitude = longitude;
+    }
+
+    public void clearLiveTail() {
+        hasLiveTail = false;
+    }
+
+    public void clear() {
+        fullTrack.clear();
+        for (StreamingSimplifier level : coarseLevels) {
+            level.reset();
+        }
+        hasLiveTail = false;
+        invalidateCache();
+    }
+
+    @Override
+    public void draw(Canvas canvas, Projection projection) {
+        int level = chooseLevel(projection);
+        StreamingSimplifier simplifier = level == 0 ? null : coarseLevels[level - 1];
+        PackedTrack lod = simplifier == null ? fullTrack : simplifier.getVertices();
+        int count = lod.size();
+        if (count == 0) {
+            return;
+        }
+        updateRoutePath(level, lod, count);
+
+        // 快取的 Path 是 Mercator 座標：移到原點在畫面上的位置，轉成地圖的方向，再縮放到目前的世界大小
+        float scale = (float) (projection.getWorldMapSize() / PATH_WORLD_SIZE);
+        toPixels(projection, originLatitude, originLongitude);
+        canvas.save();
+        canvas.translate(reusablePoint.x, reusablePoint.y);
+        canvas.rotate(projection.getOrientation());
+        canvas.scale(scale, scale);
+        // 線寬也會被縮放，先除回去
+        paint.setStrokeWidth(widthPixels / scale);
+        canvas.drawPath(routePath, paint);
+        canvas.restore();
+
+        // 最後一個頂點 → 這一層的 tail → 目前位置，只有兩三個點，直接用畫面座標畫
+        tailPath.rewind();
+        toPixels(projection, lod.getLatitude(count - 1), lod.getLongitude(count - 1));
+        tailPath.moveTo(reusablePoint.x, reusablePoint.y);
+        if (simplifier != null && simplifier.hasTail()) {
+            toPixels(projection, simplifier.getTailLatitude(), simplifier.getTailLongitude());
+            tailPath.lineTo(reusablePoint.x, reusablePoint.y);
+        }
+        if (hasLiveTail) {
+            toPixels(projection, liveTailLatitude, liveTailLongitude);
+            tailPath.lineTo(reusablePoint.x, reusablePoint.y);
+        }
+        paint.setStrokeWidth(widthPixels);
+        canvas.drawPath(tailPath, paint);
+    }
+
+    /**
+     * 換了 LOD 或頂點變少 (清除後重新加入) 時重建快取的 Path，否則只補上新的頂點
+     */
+    private void updateRoutePath(int level, PackedTrack lod, int count) {
+        if (level != cachedLevel || count < cachedVertexCount) {
+            routePath.rewind();
+            cachedLevel = level;
+            cachedVertexCount = 0;
+            originLatitude = lod.getLatitude(0);
+            originLongitude = lod.getLongitude(0);
+            originX = mercatorX(originLongitude);
+            originY = mercatorY(originLatitude);
+        }
+        for (int i = cachedVertexCount; i < count; i++) {
+            float x = (float) ((mercatorX(lod.getLongitude(i)) - originX) * PATH_WORLD_SIZE);
+            float y = (float) ((mercatorY(lod.getLatitude(i)) - originY) * PATH_WORLD_SIZE);
+            if (i == 0) {
+                routePath.moveTo(x, y);
+            } else {
+                routePath.lineTo(x, y);
+            }
+        }
+        cachedVertexCount = count;
+    }
+
+    /**
+     * 挑選誤差不超過一個像素的最粗 LOD
+     */
+    private int chooseLevel(Projection projection) {
+        BoundingBox box = projection.getBoundingBox();
+        double latitude = (box.getLatNorth() + box.getLatSouth()) / 2;
+        double metersPerPixel = EARTH_CIRCUMFERENCE_METERS * Math.cos(Math.toRadians(latitude))
+                / projection.getWorldMapSize();
+        int level = 0;
+        for (int i = 1; i < LEVEL_TOLERANCES_METERS.length; i++) {
+            if (LEVEL_TOLERANCES_METERS[i] <= metersPerPixel) {
+                level = i;
+            }
+        }
+        return level;
+    }
+
+    /**
+     * 經度 → Web Mercator X (0~1，由西往東)
+     */
+    private static double mercatorX(double longitude) {
+        return (longitude + 180) / 360;
+    }
+
+    /**
+     * 緯度 → Web Mercator Y (0~1，由北往南)
+     */
+    private static double mercatorY(double latitude) {
+        double sin = Math.sin(Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude))));
+        return 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+    }
+
+    private void toPixels(Projection projection, double latitude, double longitude) {
+        reusableGeoPoint.setCoords(latitude, longitude);
+        projection.toPixels(reusableGeoPoint, reusablePoint);
+    }
+
+    private void invalidateCache() {
+        routePath.rewind();
+        cachedLevel = -1;
+        cachedVertexCount = 0;
+    }
+
+    @Override
+    public void onDetach(MapView mapView) {
+        invalidateCache();
+        tailPath.reset();
+        super.onDetach(mapView);
+    }
+}
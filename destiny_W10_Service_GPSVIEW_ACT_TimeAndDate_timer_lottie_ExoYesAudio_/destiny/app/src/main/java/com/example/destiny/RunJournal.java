@@ -0,0 +1,246 @@
+package com.example.destiny;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 跑步紀錄的二進位日誌 (append-only，使用 memory-mapped 檔案)
+ *
+ * 寫入只是對映射記憶體的存取，行程被系統砍掉時資料仍在 page cache 裡；
+ * force() 只會每隔一段時間做一次，避免每個定位點都觸發磁碟同步。
+ * Service 被 START_STICKY 重新啟動時，可以用 replay() 把跑步狀態還原回來。
+ *
+ * 檔案格式：
+ *   檔頭 16 bytes：magic / version / generation / active
+ *   之後是固定 32 bytes 的紀錄：tag (int) + 內容 (28 bytes)
+ *   tag = (type << 24) | (generation & 0xFFFFFF)，最後才寫入 tag，
+ *   所以寫到一半的紀錄或上一次跑步殘留的紀錄都會因為 generation 不符而被忽略。
+ */
+public final class RunJournal implements Closeable {
+
+    public interface Replay {
+        void onStart(long baseTime, double distanceOffset, long timeOffset);
+
+        void onFix(double latitude, double longitude, long timeMillis, float accuracy);
+
+        void onPause(long timeMillis);
+
+        void onResume(long timeMillis);
+
+        void onLap(long timeMillis);
+    }
+
+    private static final int MAGIC = 0x524A4E4C; // "RJNL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 32;
+    private static final int GENERATION_MASK = 0xFFFFFF;
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_GENERATION = 8;
+    private static final int OFFSET_ACTIVE = 12;
+
+    private static final int TYPE_START = 1;
+    private static final int TYPE_FIX = 2;
+    private static final int TYPE_PAUSE = 3;
+    private static final int TYPE_RESUME = 4;
+    private static final int TYPE_LAP = 5;
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 5000;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long flushIntervalMillis;
+    private MappedByteBuffer buffer;
+    private int generation;
+    private int position;
+    private boolean dirty = false;
+    private long lastFlushTime = 0;
+
+    private RunJournal(RandomAccessFile file, long flushIntervalMillis) throws IOException {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.flushIntervalMillis = flushIntervalMillis;
+        long size = Math.max(channel.size(), INITIAL_CAPACITY);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        if (buffer.getInt(OFFSET_MAGIC) != MAGIC || buffer.getInt(OFFSET_VERSION) != VERSION) {
+            // 新檔案或格式不符，重新初始化檔頭
+            buffer.putInt(OFFSET_MAGIC, MAGIC);
+            buffer.putInt(OFFSET_VERSION, VERSION);
+            buffer.putInt(OFFSET_GENERATION, 0);
+            buffer.putInt(OFFSET_ACTIVE, 0);
+            buffer.force();
+        }
+        generation = buffer.getInt(OFFSET_GENERATION);
+        position = HEADER_SIZE;
+    }
+
+    public static RunJournal open(File journalFile) throws IOException {
+        return open(journalFile, DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    public static RunJournal open(File journalFile, long flushIntervalMillis) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(journalFile, "rw");
+        try {
+            return new RunJournal(raf, flushIntervalMillis);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 重播日誌中未結束的跑步紀錄
+     * @return 如果有可以還原的跑步則回傳 true
+     */
+    public boolean replay(Replay replay) {
+        if (buffer.getInt(OFFSET_ACTIVE) == 0) {
+            return false;
+        }
+        boolean started = false;
+        int offset = HEADER_SIZE;
+        while (offset + RECORD_SIZE <= buffer.capacity()) {
+            int tag = buffer.getInt(offset);
+            if ((tag & GENERATION_MASK) != (generation & GENERATION_MASK)) {
+                break;
+            }
+            int type = tag >>> 24;
+            if (type == TYPE_START) {
+                replay.onStart(buffer.getLong(offset + 4), buffer.getDouble(offset + 12), buffer.getLong(offset + 20));
+                started = true;
+            } else if (type == TYPE_FIX && started) {
+                replay.onFix(buffer.getDouble(offset + 4), buffer.getDouble(offset + 12),
+                        buffer.getLong(offset + 20), buffer.getFloat(offset + 28));
+            } else if (type == TYPE_PAUSE && started) {
+                replay.onPause(buffer.getLong(offset + 4));
+            } else if (type == TYPE_RESUME && started) {
+                replay.onResume(buffer.getLong(offset + 4));
+            } else if (type == TYPE_LAP && started) {
+                replay.onLap(buffer.getLong(offset + 4));
+            } else {
+                break;
+            }
+            offset += RECORD_SIZE;
+        }
+        // 之後的寫入接在最後一筆有效紀錄後面
+        position = offset;
+        return started;
+    }
+
+    /**
+     * 開始記錄一次新的跑步，之前的紀錄都會失效
+     */
+    public void beginRun(long baseTime, double distanceOffset, long timeOffset) {
+        generation = (generation + 1) & GENERATION_MASK;
+        buffer.putInt(OFFSET_GENERATION, generation);
+        buffer.putInt(OFFSET_ACTIVE, 1);
+        position = HEADER_SIZE;
+        appendStart(baseTime, distanceOffset, timeOffset);
+        flush();
+    }
+
+    private void appendStart(long baseTime, double distanceOffset, long timeOffset) {
+        int offset = reserve();
+        buffer.putLong(offset + 4, baseTime);
+        buffer.putDouble(offset + 12, distanceOffset);
+        buffer.putLong(offset + 20, timeOffset);
+        commit(offset, TYPE_START);
+    }
+
+    public void appendFix(double latitude, double longitude, long timeMillis, float accuracy) {
+        int offset = reserve();
+        buffer.putDouble(offset + 4, latitude);
+        buffer.putDouble(offset + 12, longitude);
+        buffer.putLong(offset + 20, timeMillis);
+        buffer.putFloat(offset + 28, accuracy);
+        commit(offset, TYPE_FIX);
+    }
+
+    /**
+     * 暫停 / 繼續 / 手動分圈是使用者操作，寫入後立即同步
+     */
+    public void appendPause(long timeMillis) {
+        appendStateChange(TYPE_PAUSE, timeMillis);
+    }
+
+    public void appendResume(long timeMillis) {
+        appendStateChange(TYPE_RESUME, timeMillis);
+    }
+
+    public void appendLap(long timeMillis) {
+        appendStateChange(TYPE_LAP, timeMillis);
+    }
+
+    private void appendStateChange(int type, long timeMillis) {
+        int offset = reserve();
+        buffer.putLong(offset + 4, timeMillis);
+        commit(offset, type);
+        flush();
+    }
+
+    private int reserve() {
+        if (position + RECORD_SIZE > buffer.capacity()) {
+            grow();
+        }
+        int offset = position;
+        position += RECORD_SIZE;
+        return offset;
+    }
+
+    private void commit(int offset, int type) {
+        // tag 最後寫入，確保紀錄內容已經完整
+        buffer.putInt(offset, (type << 24) | generation);
+        dirty = true;
+    }
+
+    private void grow() {
+        try {
+            buffer.force();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) buffer.capacity() * 2);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to grow run journal", e);
+        }
+    }
+
+    /**
+     * 距離上次同步超過設定的間隔才會真正寫回磁碟
+     */
+    public void flushIfDue(long nowMillis) {
+        if (dirty && nowMillis - lastFlushTime >= flushIntervalMillis) {
+            flush();
+            lastFlushTime = nowMillis;
+        }
+    }
+
+    public void flush() {
+        buffer.force();
+        dirty = false;
+    }
+
+    /**
+     * 跑步正常結束，清除可還原的狀態
+     */
+    public void clear() {
+        buffer.putInt(OFFSET_ACTIVE, 0);
+        generation = (generation + 1) & GENERATION_MASK;
+        buffer.putInt(OFFSET_GENERATION, generation);
+        position = HEADER_SIZE;
+        flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (dirty) {
+            flush();
+        }
+        channel.close();
+        file.close();
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.destiny;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import androidx.core.app.NotificationCompat;
+
+/**
+ * 跑步前景通知的更新器
+ *
+ * 整個 Service 生命週期只建立一個 Builder 和一個 PendingIntent；
+ * 更新會合併，最多每 minIntervalMillis 送出一次 notify()。
+ * 跑步中的經過時間交給系統的 chronometer 顯示 (setUsesChronometer + setWhen)，不需要 App 自己每秒更新；
+ * 暫停時 chronometer 不會停，改把凍結的時間寫在內容文字裡。
+ * 所有方法都必須在建構時傳入的 handler 所在的執行緒上呼叫。
+ */
+public final class RunNotifier {
+
+    private final NotificationManager manager;
+    private final NotificationCompat.Builder builder;
+    private final Handler handler;
+    private final int notificationId;
+    private final long minIntervalMillis;
+    private final StringBuilder textBuilder = new StringBuilder(48);
+    private final char[] durationChars = new char[RunTextFormatter.BUFFER_SIZE];
+
+    // 等待送出的最新狀態
+    private double pendingDistance;
+    private long pendingElapsed;
+    // chronometer 的起點在要求更新時就算好，延後送出也不會讓碼表倒退
+    private long pendingWhen;
+    private boolean pendingPaused;
+    private boolean hasPending = false;
+    private long lastPostTime = -1;
+    // cancel() 之後不再送出任何通知 (停止定位是非同步的，之後仍可能收到定位點)
+    private boolean stopped = false;
+
+    private final Runnable postRunnable = this::postPending;
+
+    public RunNotifier(Context context, String channelId, int notificationId, long minIntervalMillis, Handler handler) {
+        this.manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        this.handler = handler;
+        this.notificationId = notificationId;
+        this.minIntervalMillis = minIntervalMillis;
+
+        Intent notificationIntent = new Intent(context, SecondActivity.class);
+        PendingIntent pendingIntent = PendingIntent.getActivity(context, 0, notificationIntent, PendingIntent.FLAG_IMMUTABLE);
+        this.builder = new NotificationCompat.Builder(context, channelId)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentIntent(pendingIntent)
+                .setOnlyAlertOnce(true)
+                .setOngoing(true);
+    }
+
+    /**
+     * 建立目前狀態的通知 (給 startForeground 使用)，同時視為一次已送出的更新
+     */
+    public Notification build(double distanceMeters, long elapsedMillis, boolean paused) {
+        handler.removeCallbacks(postRunnable);
+        hasPending = false;
+        lastPostTime = SystemClock.elapsedRealtime();
+        return apply(distanceMeters, elapsedMillis, System.currentTimeMillis() - elapsedMillis, paused).build();
+    }
+
+    /**
+     * 要求更新通知；距離上次送出不到 minIntervalMillis 時會延後並合併
+     */
+    public void update(double distanceMeters, long elapsedMillis, boolean paused) {
+        if (stopped) return;
+        setPending(distanceMeters, elapsedMillis, paused);
+        if (hasPending) {
+            return; // 已經排好一次送出，會帶上最新的狀態
+        }
+        hasPending = true;
+        long wait = lastPostTime < 0 ? 0 : lastPostTime + minIntervalMillis - SystemClock.elapsedRealtime();
+        if (wait <= 0) {
+            postPending();
+        } else {
+            handler.postDelayed(postRunnable, wait);
+        }
+    }
+
+    /**
+     * 狀態轉換 (暫停 / 繼續) 要立刻反映在通知上，不等待合併
+     */
+    public void updateNow(double distanceMeters, long elapsedMillis, boolean paused) {
+        if (stopped) return;
+        handler.removeCallbacks(postRunnable);
+        setPending(distanceMeters, elapsedMillis, paused);
+        hasPending = true;
+        postPending();
+    }
+
+    /**
+     * 停止更新並移除通知，之後的 update() / updateNow() 都會被忽略
+     */
+    public void cancel() {
+        stopped = true;
+        handler.removeCallbacks(postRunnable);
+        hasPending = false;
+        if (manager != null) {
+            manager.cancel(notificationId);
+        }
+    }
+
+    private void setPending(double distanceMeters, long elapsedMillis, boolean paused) {
+        pendingDistance = distanceMeters;
+        pendingElapsed = elapsedMillis;
+        pendingWhen = System.currentTimeMillis() - elapsedMillis;
+        pendingPaused = paused;
+    }
+
+    private void postPending() {
+        if (!hasPending || stopped) return;
+        hasPending = false;
+        lastPostTime = SystemClock.elapsedRealtime();
+        if (manager != null) {
+            manager.notify(notificationId, apply(pendingDistance, pendingElapsed, pendingWhen, pendingPaused).build());
+        }
+    }
+
+    /**
+     * @param whenMillis chronometer 的起點 (牆上時鐘) = 要求更新當時的時間 - 已經過的時間
+     */
+    private NotificationCompat.Builder apply(double distanceMeters, long elapsedMillis, long whenMillis, boolean paused) {
+        textBuilder.setLength(0);
+        textBuilder.append("距離: ").append(Math.round(distanceMeters)).append(" 公尺");
+        if (paused) {
+            textBuilder.append("  時間: ")
+                    .append(durationChars, 0, RunTextFormatter.formatDuration(elapsedMillis, durationChars, false));
+        }
+        builder.setContentTitle(paused ? "跑步已暫停" : "跑步追蹤中")
+                .setContentText(textBuilder);
+        if (paused) {
+            builder.setUsesChronometer(false).setShowWhen(false);
+        } else {
+            builder.setShowWhen(true)
+                    .setUsesChronometer(true)
+                    .setWhen(whenMillis);
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.destiny;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+/**
+ * 依照 Activity 的生命週期決定要不要把 Service 的狀態畫到畫面上
+ *
+ * 只有在 Activity 至少是 STARTED (畫面看得到) 而且已經連上 Service 時才訂閱 RunStateChannel；
+ * 畫面看不到時完全不訂閱，主執行緒不會收到任何通知，也不會加點、重畫地圖或格式化文字。
+ * 最新的狀態一直保存在 Service 的 RunStateChannel 裡，回到畫面重新訂閱時會立刻收到最新的快照，
+ * 錯過的定位點由 view 依頂點序號一次補齊。
+ * 只能在主執行緒上使用。
+ */
+public class RunPresenter implements DefaultLifecycleObserver {
+
+    private final RunStateChannel.Listener view;
+    private RunningService.LocalBinder binder;
+    private boolean started = false;
+    private boolean listening = false;
+
+    public RunPresenter(LifecycleOwner owner, RunStateChannel.Listener view) {
+        this.view = view;
+        owner.getLifecycle().addObserver(this);
+    }
+
+    /**
+     * 連上 Service (畫面看得到時會立刻收到最新的快照)
+     */
+    public void attach(RunningService.LocalBinder binder) {
+        if (this.binder == binder) return;
+        detach();
+        this.binder = binder;
+        refresh();
+    }
+
+    /**
+     * Service 斷線或 Activity 結束時呼叫
+     */
+    public void detach() {
+        if (listening && binder != null) {
+            binder.removeRunListener(view);
+        }
+        listening = false;
+        binder = null;
+    }
+
+    @Override
+    public void onStart(@NonNull LifecycleOwner owner) {
+        started = true;
+        refresh();
+    }
+
+    @Override
+    public void onStop(@NonNull LifecycleOwner owner) {
+        started = false;
+        refresh();
+    }
+
+    @Override
+    public void onDestroy(@NonNull LifecycleOwner owner) {
+        detach();
+        owner.getLifecycle().removeObserver(this);
+    }
+
+    private void refresh() {
+        boolean shouldListen = started && binder != null;
+        if (shouldListen == listening) return;
+        listening = shouldListen;
+        if (shouldListen) {
+            binder.addRunListener(view);
+        } else {
+            binder.removeRunListener(view);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.destiny;
+
+/**
+ * 跑步狀態的不可變快照 (距離、經過時間、是否暫停、目前位置、地名、配速、爬升)
+ */
+public final class RunSnapshot {
+
+    public final double distanceMeters;
+    public final long elapsedMillis;
+    public final boolean paused;
+    // 計時基準：這一段開始跑的時間 (elapsedRealtime，暫停時為 -1) 與當時已經累計的時間
+    public final long runningSinceMillis;
+    public final long elapsedBaseMillis;
+    // 已接受的定位點數量，可以當作最新定位點的序號使用
+    public final long fixCount;
+    public final boolean hasLocation;
+    public final double latitude;
+    public final double longitude;
+    public final String locationName;
+    // 目前配速 (秒/公里)，還不知道時為 NaN
+    public final double paceSecondsPerKm;
+    // 最快的連續 1 公里 (毫秒)，還沒跑滿 1 公里時為 -1
+    public final long bestKmMillis;
+    // 累計爬升 / 下降 (公尺)
+    public final double elevationGain;
+    public final double elevationLoss;
+
+    public RunSnapshot(double distanceMeters, long elapsedMillis, boolean paused,
+                       long runningSinceMillis, long elapsedBaseMillis, long fixCount,
+                       boolean hasLocation, double latitude, double longitude,
+                       String locationName, double paceSecondsPerKm, long bestKmMillis,
+                       double elevationGain, double elevationLoss) {
+        this.distanceMeters = distanceMeters;
+        this.elapsedMillis = elapsedMillis;
+        this.paused = paused;
+        this.runningSinceMillis = runningSinceMillis;
+        this.elapsedBaseMillis = elapsedBaseMillis;
+        this.fixCount = fixCount;
+        this.hasLocation = hasLocation;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.locationName = locationName;
+        this.paceSecondsPerKm = paceSecondsPerKm;
+        this.bestKmMillis = bestKmMillis;
+        this.elevationGain = elevationGain;
+        this.elevationLoss = elevationLoss;
+    }
+
+    /**
+     * 任意時間點的跑步經過時間 (和 Service 使用同一個時鐘)，畫面可以自己算碼表，不必等下一個快照
+     */
+    public long elapsedAt(long nowMillis) {
+        if (paused) {
+            return elapsedBaseMillis;
+        }
+        return elapsedBaseMillis + Math.max(0, nowMillis - runningSinceMillis);
+    }
+
+    /**
+     * 內容是否與另一個快照完全相同 (用來避免發送沒有變化的更新)
+     */
+    public boolean sameStateAs(RunSnapshot other) {
+        if (other == null) return false;
+        if (other == this) return true;
+        return distanceMeters == other.distanceMeters
+                && elapsedMillis == other.elapsedMillis
+                && paused == other.paused
+                && runningSinceMillis == other.runningSinceMillis
+                && elapsedBaseMillis == other.elapsedBaseMillis
+                && fixCount == other.fixCount
+                && hasLocation == other.hasLocation
+                && latitude == other.latitude
+                && longitude == other.longitude
+                && Double.compare(paceSecondsPerKm, other.paceSecondsPerKm) == 0
+                && bestKmMillis == other.bestKmMillis
+                && elevationGain == other.elevationGain
+                && elevationLoss == other.elevationLoss
+                && (locationName == null ? other.locationName == null : locationName.equals(other.locationName));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.destiny;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Service 與 Activity 之間的行程內狀態通道 (取代 LocalBroadcastManager)
+ *
+ * 只在快照內容真的改變時才通知訂閱者；新加入的訂閱者會立刻收到最新的快照。
+ * publish() 可以在追蹤執行緒上呼叫，通知則透過 deliveryExecutor (例如主執行緒的 Handler) 送出；
+ * 如果通知還沒送出又有新的快照，只會送出最新的那一個。
+ */
+public final class RunStateChannel {
+
+    public interface Listener {
+        void onRunUpdate(RunSnapshot snapshot);
+    }
+
+    // 通知過程中也允許加入 / 移除訂閱者
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile RunSnapshot latest;
+    private final Executor deliveryExecutor;
+    private final AtomicBoolean deliveryPending = new AtomicBoolean(false);
+    private final Runnable deliverLatest = this::deliverLatest;
+
+    public RunStateChannel(Executor deliveryExecutor) {
+        this.deliveryExecutor = deliveryExecutor;
+    }
+
+    /**
+     * 發佈新的快照，內容沒有變化時直接忽略 (只能由單一個發佈執行緒呼叫)
+     * @return 是否有新的內容需要通知
+     */
+    public boolean publish(RunSnapshot snapshot) {
+        if (snapshot == null || snapshot.sameStateAs(latest)) {
+            return false;
+        }
+        latest = snapshot;
+        // 沒有訂閱者 (例如畫面在背景) 時不排任何工作到主執行緒；之後加入的訂閱者會直接收到 latest
+        if (!listeners.isEmpty() && deliveryPending.compareAndSet(false, true)) {
+            deliveryExecutor.execute(deliverLatest);
+        }
+        return true;
+    }
+
+    private void deliverLatest() {
+        deliveryPending.set(false);
+        RunSnapshot current = latest;
+        for (Listener listener : listeners) {
+            listener.onRunUpdate(current);
+        }
+    }
+
+    /**
+     * 加入訂閱者 (應在 deliveryExecutor 所在的執行緒上呼叫)
+     */
+    public void addListener(Listener listener) {
+        if (listener == null || listeners.contains(listener)) {
+            return;
+        }
+        listeners.add(listener);
+        RunSnapshot current = latest;
+        if (current != null) {
+            listener.onRunUpdate(current);
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public RunSnapshot getLatest() {
+        return latest;
+    }
+}
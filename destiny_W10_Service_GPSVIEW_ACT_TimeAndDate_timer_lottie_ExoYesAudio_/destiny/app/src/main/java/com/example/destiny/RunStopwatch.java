@@ -0,0 +1,94 @@
+package com.example.destiny;
+
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * 畫面上的碼表：由最新快照的計時基準 (RunSnapshot.elapsedAt) 在本地算出經過時間，
+ * 跟著 Choreographer 的每一幀更新，不需要 Service 一直送更新過來
+ *
+ * 只在畫面看得到、而且跑步沒有暫停時才註冊 frame callback；
+ * 不顯示百分秒時改成每秒更新一次 (對齊整秒)，其他時間完全不喚醒。
+ * 只能在主執行緒上使用。
+ */
+public class RunStopwatch implements Choreographer.FrameCallback {
+
+    public interface Listener {
+        void onStopwatchTick(long elapsedMillis);
+    }
+
+    private final Listener listener;
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private RunSnapshot snapshot;
+    private boolean visible = false;
+    private boolean hundredths = true;
+    private boolean scheduled = false;
+
+    public RunStopwatch(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 換成新的計時基準 (暫停 / 繼續 / 新的跑步)；null 表示沒有在跑步
+     */
+    public void setSnapshot(RunSnapshot snapshot) {
+        this.snapshot = snapshot;
+        update();
+    }
+
+    public void setVisible(boolean visible) {
+        if (this.visible == visible) return;
+        this.visible = visible;
+        update();
+    }
+
+    /**
+     * @param hundredths 是否顯示百分秒；不顯示時每秒只更新一次
+     */
+    public void setShowHundredths(boolean hundredths) {
+        if (this.hundredths == hundredths) return;
+        this.hundredths = hundredths;
+        update();
+    }
+
+    public long getElapsedMillis() {
+        return snapshot == null ? 0 : snapshot.elapsedAt(SystemClock.elapsedRealtime());
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        scheduled = false;
+        if (!isTicking()) return;
+        // frameTimeNanos 是不含休眠的時鐘，和計時用的 elapsedRealtime 不同，這裡另外取
+        long elapsed = getElapsedMillis();
+        listener.onStopwatchTick(elapsed);
+        schedule(elapsed);
+    }
+
+    private boolean isTicking() {
+        return visible && snapshot != null && !snapshot.paused;
+    }
+
+    private void update() {
+        if (scheduled) {
+            choreographer.removeFrameCallback(this);
+            scheduled = false;
+        }
+        long elapsed = getElapsedMillis();
+        if (snapshot != null) {
+            listener.onStopwatchTick(elapsed);
+        }
+        if (isTicking()) {
+            schedule(elapsed);
+        }
+    }
+
+    private void schedule(long elapsed) {
+        scheduled = true;
+        if (hundredths) {
+            choreographer.postFrameCallback(this);
+        } else {
+            choreographer.postFrameCallbackDelayed(this, 1000 - elapsed % 1000);
+        }
+    }
+}
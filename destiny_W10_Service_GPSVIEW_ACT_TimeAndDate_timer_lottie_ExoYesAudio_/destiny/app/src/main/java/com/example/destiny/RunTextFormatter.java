@@ -0,0 +1,103 @@
+package com.example.destiny;
+
+/**
+ * 跑步畫面上的時間、距離與配速文字
+ *
+ * 直接寫進呼叫端重複使用的 char[]，搭配 TextView.setText(char[], int, int) 使用，
+ * 每一幀都不會配置新的 String / Formatter。buffer 至少要 BUFFER_SIZE 個字元。
+ */
+public final class RunTextFormatter {
+
+    public static final int BUFFER_SIZE = 32;
+    private static final char[] PACE_PREFIX = "配速 ".toCharArray();
+    private static final char[] PACE_SUFFIX = "\"/km".toCharArray();
+    private static final char[] PACE_UNKNOWN = "配速 --'--\"/km".toCharArray();
+
+    private RunTextFormatter() {
+    }
+
+    /**
+     * 時:分:秒.百分秒 (例如 01:02:03.45)，小時至少兩位，超過 99 小時照樣顯示
+     * @return 寫入的字元數
+     */
+    public static int formatDuration(long millis, char[] out) {
+        return formatDuration(millis, out, true);
+    }
+
+    /**
+     * @param hundredths false 時只顯示到秒 (例如 01:02:03)
+     */
+    public static int formatDuration(long millis, char[] out, boolean hundredths) {
+        if (millis < 0) millis = 0;
+        long totalSeconds = millis / 1000;
+        long hours = totalSeconds / 3600;
+        int minutes = (int) (totalSeconds / 60 % 60);
+        int seconds = (int) (totalSeconds % 60);
+        int fraction = (int) (millis / 10 % 100);
+
+        int length = hours < 100 ? writeTwoDigits((int) hours, out, 0) : writeLong(hours, out, 0);
+        out[length++] = ':';
+        length = writeTwoDigits(minutes, out, length);
+        out[length++] = ':';
+        length = writeTwoDigits(seconds, out, length);
+        if (!hundredths) {
+            return length;
+        }
+        out[length++] = '.';
+        return writeTwoDigits(fraction, out, length);
+    }
+
+    /**
+     * 不需要避免配置的地方 (例如結算畫面) 用的 String 版本
+     */
+    public static String formatDuration(long millis) {
+        char[] out = new char[BUFFER_SIZE];
+        return new String(out, 0, formatDuration(millis, out));
+    }
+
+    /**
+     * 距離四捨五入到整數公尺 (和 "%.0f" 相同)
+     */
+    public static int formatDistance(double meters, char[] out) {
+        return writeLong(Math.max(0, Math.round(meters)), out, 0);
+    }
+
+    /**
+     * 配速顯示成 配速 分'秒"/km，還沒有配速時顯示 --
+     */
+    public static int formatPace(double secondsPerKm, char[] out) {
+        if (Double.isNaN(secondsPerKm) || Double.isInfinite(secondsPerKm) || secondsPerKm < 0) {
+            System.arraycopy(PACE_UNKNOWN, 0, out, 0, PACE_UNKNOWN.length);
+            return PACE_UNKNOWN.length;
+        }
+        long seconds = Math.round(secondsPerKm);
+        System.arraycopy(PACE_PREFIX, 0, out, 0, PACE_PREFIX.length);
+        int length = writeLong(seconds / 60, out, PACE_PREFIX.length);
+        out[length++] = '\'';
+        length = writeTwoDigits((int) (seconds % 60), out, length);
+        System.arraycopy(PACE_SUFFIX, 0, out, length, PACE_SUFFIX.length);
+        return length + PACE_SUFFIX.length;
+    }
+
+    private static int writeTwoDigits(int value, char[] out, int at) {
+        out[at] = (char) ('0' + value / 10);
+        out[at + 1] = (char) ('0' + value % 10);
+        return at + 2;
+    }
+
+    private static int writeLong(long value, char[] out, int at) {
+        if (value < 0) {
+            out[at++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = at + digits - 1; i >= at; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return at + digits;
+    }
+}
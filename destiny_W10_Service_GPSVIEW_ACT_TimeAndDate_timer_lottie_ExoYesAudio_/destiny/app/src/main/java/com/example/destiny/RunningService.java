@@ -3,20 +3,29 @@ package com.example.destiny;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
 import android.location.Location;
+import android.os.BatteryManager;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
-import androidx.core.app.NotificationCompat;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationCallback;
@@ -25,35 +34,105 @@ import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.location.Priority;
 
-import java.util.Locale;
+import java.io.File;
+import java.io.IOException;
 
+/**
+ * 跑步追蹤 Service
+ *
+ * 定位點的接收、過濾、日誌與快照發佈都在專用的追蹤執行緒 (trackingThread) 上執行；
+ * UI 執行緒只讀取已發佈的不可變快照，彼此不會互相拖慢。
+ */
 public class RunningService extends Service {
 
     private static final String TAG = "RunningService";
     private static final String NOTIFICATION_CHANNEL_ID = "RunningChannel";
     private static final int NOTIFICATION_ID = 1;
-    private static final float DISTANCE_NOISE_THRESHOLD = 2.0f;
-
-    public static final String ACTION_BROADCAST = RunningService.class.getName() + "Broadcast";
-    public static final String EXTRA_DISTANCE = "extra_distance";
-    public static final String EXTRA_ELAPSED_TIME = "extra_elapsed_time";
-    public static final String EXTRA_LOCATION_NAME = "extra_location_name";
-    public static final String EXTRA_LOCATION = "extra_location";
+    private static final String JOURNAL_FILE_NAME = "run_journal.bin";
+    // 通知最多每 5 秒更新一次，經過時間由系統 chronometer 自己跳動
+    private static final long NOTIFICATION_MIN_INTERVAL_MS = 5000;
 
     private FusedLocationProviderClient fusedLocationClient;
     private LocationCallback locationCallback;
-    private Location previousLocation = null;
-    private Location latestLocation = null;
 
-    private float totalDistance = 0f;
-    private long startTime = 0;
-    // *** 核心修改：新增變數來儲存從暫停中恢復的時間 ***
-    private long timeOffset = 0;
-    private String currentLocationName = "獲取中...";
+    // 距離與時間的計算都交給 TrackEngine (只在追蹤執行緒上修改，修改定位點時持有它的鎖)
+    // 定位點已經先經過 fixPipeline 平滑，所以距離門檻只需要濾掉次公尺級的殘差
+    private static final double FILTERED_NOISE_THRESHOLD_METERS = 1.0;
+    private final TrackEngine trackEngine = new TrackEngine(TrackEngine.DEFAULT_CAPACITY, FILTERED_NOISE_THRESHOLD_METERS);
+    // 定位點清理管線：剔除跳點 + 依精度加權的卡爾曼濾波 (只在追蹤執行緒上使用)
+    private final FixPipeline fixPipeline = FixPipeline.createDefault();
+    private final FixFilter.Fix filteredFix = new FixFilter.Fix();
+    // 地圖用的簡化軌跡 (完整解析度的定位點仍然寫入日誌與 TrackEngine)，和 TrackEngine 用同一把鎖
+    private final StreamingSimplifier pathSimplifier = new StreamingSimplifier();
+    // 每公里分段與手動分圈 (和 TrackEngine 用同一把鎖)
+    private final SplitEngine splitEngine = new SplitEngine();
+    // 即時配速、最佳 1 公里與配速區間 (只在追蹤執行緒上使用)
+    private final RollingStats rollingStats = new RollingStats();
+    // 爬升 / 下降：有氣壓計時用氣壓高度，否則用 GPS 高度 (只在追蹤執行緒上使用)
+    private final ElevationTracker elevationTracker = new ElevationTracker();
+    private SensorManager sensorManager;
+    private Sensor pressureSensor;
+    // 行程被系統砍掉後，START_STICKY 重新啟動時用來還原跑步
+    private RunJournal runJournal;
+    private static final String LOCATION_NAME_PENDING = "獲取中...";
+    // 只用來顯示，不會寫進 AreaNameResolver 的快取
+    private static final String UNKNOWN_AREA_NAME = "未知區域";
+    private String currentLocationName = LOCATION_NAME_PENDING;
+    // 目前地名所屬的 geohash 格子，跑進新的格子才重新查詢地名 (只在追蹤執行緒上使用)
+    private String areaCell;
+    private AreaNameResolver areaNameResolver;
+
+    private RunNotifier runNotifier;
+    // onDestroy 之後仍可能收到已經排進追蹤執行緒的定位點，收到時直接丟掉
+    private volatile boolean stopping = false;
+
+    // 追蹤執行緒：定位回呼、通知與快照發佈都在這裡，不佔用主執行緒
+    private HandlerThread trackingThread;
+    private Handler trackingHandler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static final int LOW_BATTERY_PERCENT = 15;
+    // 氣壓計每秒取樣一次，讓感測器 FIFO 最多累積 30 秒再一次送出 (不另外喚醒 CPU)
+    private static final int PRESSURE_SAMPLING_PERIOD_US = 1_000_000;
+    private static final int PRESSURE_MAX_REPORT_LATENCY_US = 30_000_000;
+
+    // 依速度、暫停與電量狀態決定定位請求的設定
+    private final SamplingScheduler samplingScheduler = new SamplingScheduler();
+    private SamplingScheduler.Profile requestedProfile = null;
+
+    private final BroadcastReceiver powerStateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            boolean changed = false;
+            if (PowerManager.ACTION_POWER_SAVE_MODE_CHANGED.equals(action)) {
+                PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+                changed = samplingScheduler.setPowerSaveMode(powerManager != null && powerManager.isPowerSaveMode());
+            } else if (Intent.ACTION_BATTERY_LOW.equals(action)) {
+                changed = samplingScheduler.setBatteryLow(true);
+            } else if (Intent.ACTION_BATTERY_OKAY.equals(action)) {
+                changed = samplingScheduler.setBatteryLow(false);
+            }
+            if (changed) {
+                startLocationUpdates();
+            }
+        }
+    };
+
+    private final SensorEventListener pressureListener = new SensorEventListener() {
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+            // event.timestamp 與 elapsedRealtimeNanos 使用同一個時鐘
+            float altitude = SensorManager.getAltitude(SensorManager.PRESSURE_STANDARD_ATMOSPHERE, event.values[0]);
+            elevationTracker.onBarometerAltitude(event.timestamp / 1_000_000L, altitude);
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        }
+    };
 
-    private final Handler timerHandler = new Handler(Looper.getMainLooper());
-    private Runnable timerRunnable;
-    private static final int TIMER_UPDATE_INTERVAL_MS = 50;
+    // 取代 LocalBroadcastManager：只在狀態有變化時才通知 Activity (在主執行緒上回呼)
+    private final RunStateChannel stateChannel = new RunStateChannel(mainHandler::post);
 
     private final IBinder binder = new LocalBinder();
 
@@ -61,6 +140,101 @@ public class RunningService extends Service {
         RunningService getService() {
             return RunningService.this;
         }
+
+        /**
+         * 訂閱跑步狀態 (在主執行緒上回呼)，訂閱時會立刻收到最新的快照
+         */
+        void addRunListener(RunStateChannel.Listener listener) {
+            stateChannel.addListener(listener);
+        }
+
+        void removeRunListener(RunStateChannel.Listener listener) {
+            stateChannel.removeListener(listener);
+        }
+
+        /**
+         * 一次把簡化後軌跡中序號 >= fromSeq 的頂點複製到 dest (給地圖使用)
+         * Service 保有完整的路線，Activity 重建後從 0 開始複製就能一次還原
+         * @return 下一次要讀取的序號
+         */
+        int copyPathSince(int fromSeq, PackedTrack dest) {
+            synchronized (trackEngine) {
+                PackedTrack vertices = pathSimplifier.getVertices();
+                int count = vertices.size();
+                if (fromSeq < count) {
+                    dest.addRange(vertices, Math.max(fromSeq, 0), count);
+                }
+                return count;
+            }
+        }
+
+        /**
+         * 最新的跑步快照，還沒有發佈過時為 null
+         */
+        RunSnapshot getLatestSnapshot() {
+            return stateChannel.getLatest();
+        }
+
+        /**
+         * 讀出最新、還沒成為頂點的位置
+         * @return 是否有這個點
+         */
+        boolean readPathTail(TrackEngine.FixSink sink) {
+            synchronized (trackEngine) {
+                return pathSimplifier.readTail(sink);
+            }
+        }
+
+        /**
+         * 暫停跑步：計時凍結、定位降為省電模式，Service 與通知都保留
+         */
+        void pauseRun() {
+            trackingHandler.post(RunningService.this::pauseRun);
+        }
+
+        /**
+         * 繼續跑步：立刻恢復計時與高精度定位
+         */
+        void resumeRun() {
+            trackingHandler.post(RunningService.this::resumeRun);
+        }
+
+        /**
+         * 手動分圈 (以目前的距離與時間為準)
+         */
+        void markLap() {
+            trackingHandler.post(RunningService.this::markLap);
+        }
+
+        /**
+         * 已完成的每公里分段時間 (毫秒)
+         */
+        long[] getSplitMillis() {
+            synchronized (trackEngine) {
+                return splitEngine.copySplitMillis();
+            }
+        }
+
+        long[] getLapMillis() {
+            synchronized (trackEngine) {
+                return splitEngine.copyLapMillis();
+            }
+        }
+
+        double[] getLapMeters() {
+            synchronized (trackEngine) {
+                return splitEngine.copyLapMeters();
+            }
+        }
+
+        /**
+         * 各配速區間累計的時間 (毫秒)，區間定義見 RollingStats.ZONE_LIMITS_SEC_PER_KM
+         */
+        long[] getPaceZoneMillis() {
+            synchronized (trackEngine) {
+                return rollingStats.copyZoneMillis();
+            }
+        }
     }
 
     @Override
@@ -71,9 +245,23 @@ public class RunningService extends Service {
     @Override
     public void onCreate() {
         super.onCreate();
+        trackingThread = new HandlerThread("RunTracking", Process.THREAD_PRIORITY_FOREGROUND);
+        trackingThread.start();
+        trackingHandler = new Handler(trackingThread.getLooper());
+
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
         createNotificationChannel();
+        runNotifier = new RunNotifier(this, NOTIFICATION_CHANNEL_ID, NOTIFICATION_ID, NOTIFICATION_MIN_INTERVAL_MS, trackingHandler);
         createLocationCallback();
+        areaNameResolver = GeocoderLookup.sharedResolver(this);
+        sensorManager = (SensorManager) getSystemService(SENSOR_SERVICE);
+        pressureSensor = sensorManager != null ? sensorManager.getDefaultSensor(Sensor.TYPE_PRESSURE) : null;
+        try {
+            runJournal = RunJournal.open(new File(getFilesDir(), JOURNAL_FILE_NAME));
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to open run journal, crash recovery disabled.", e);
+        }
+        registerPowerStateReceiver();
         Log.d(TAG, "Service onCreate");
     }
 
@@ -81,88 +269,214 @@ public class RunningService extends Service {
     public int onStartCommand(Intent intent, int flags, int startId) {
         Log.d(TAG, "Running Service Started");
 
-        // *** 核心修改：判斷是「全新開始」還是「從暫停中繼續」 ***
-        if (intent != null) {
-            // 如果是從暫停中繼續
-            if (intent.hasExtra("RESUME_TIME")) {
-                totalDistance = intent.getFloatExtra("RESUME_DISTANCE", 0f);
-                timeOffset = intent.getLongExtra("RESUME_TIME", 0L); // 載入已跑的時間
-                currentLocationName = intent.getStringExtra("INITIAL_LOCATION_NAME");
-                Log.d(TAG, "Resuming run. Distance: " + totalDistance + ", Time Offset: " + timeOffset);
-            }
-            // 如果是全新開始 (或者是從暫停繼續，也需要更新地名)
-            else if (intent.hasExtra("INITIAL_LOCATION_NAME")) {
-                totalDistance = 0f;
-                timeOffset = 0L; // 全新開始，時間偏移為0
-                currentLocationName = intent.getStringExtra("INITIAL_LOCATION_NAME");
+        // 行程被砍掉後由系統重新啟動 (START_STICKY 會帶 null Intent)：從日誌還原
+        // 這時行程才剛建立，追蹤執行緒上還沒有任何工作，可以直接在這裡重播
+        if (intent == null) {
+            if (!recoverFromJournal()) {
+                Log.w(TAG, "Restarted without a run to recover, stopping.");
+                stopSelf();
+                return START_NOT_STICKY;
             }
+            trackingHandler.post(() -> {
+                startForegroundService(trackEngine.getTotalDistance(),
+                        trackEngine.getElapsedMillis(SystemClock.elapsedRealtime()), trackEngine.isPaused());
+                startTracking();
+            });
+            return START_STICKY;
         }
 
-        startTime = System.currentTimeMillis(); // 無論如何，都重置計時的起點
-        startForegroundService();
-        startLocationUpdates();
-        startTimer();
+        // *** 核心修改：判斷是「全新開始」還是「從暫停中繼續」 ***
+        float totalDistance = 0f;
+        long timeOffset = 0L;
+        String locationName = currentLocationName;
+        // 如果是從暫停中繼續
+        if (intent.hasExtra("RESUME_TIME")) {
+            totalDistance = intent.getFloatExtra("RESUME_DISTANCE", 0f);
+            timeOffset = intent.getLongExtra("RESUME_TIME", 0L); // 載入已跑的時間
+            locationName = intent.getStringExtra("INITIAL_LOCATION_NAME");
+            Log.d(TAG, "Resuming run. Distance: " + totalDistance + ", Time Offset: " + timeOffset);
+        }
+        // 如果是全新開始 (或者是從暫停繼續，也需要更新地名)
+        else if (intent.hasExtra("INITIAL_LOCATION_NAME")) {
+            locationName = intent.getStringExtra("INITIAL_LOCATION_NAME");
+        }
+
+        final double startDistance = totalDistance;
+        final long startOffset = timeOffset;
+        final String startLocationName = locationName;
+        trackingHandler.post(() -> {
+            startForegroundService(startDistance, startOffset, false);
+            startRun(startDistance, startOffset, startLocationName);
+        });
 
         return START_STICKY;
     }
 
-    private void startTimer() {
-        timerRunnable = new Runnable() {
-            @Override
-            public void run() {
-                broadcastUpdate();
-                timerHandler.postDelayed(this, TIMER_UPDATE_INTERVAL_MS);
-            }
-        };
-        timerHandler.post(timerRunnable);
+    /**
+     * 開始新的跑步 (追蹤執行緒)
+     */
+    private void startRun(double totalDistance, long timeOffset, String locationName) {
+        currentLocationName = locationName;
+        areaCell = null;
+        long startTime = SystemClock.elapsedRealtime(); // 無論如何，都重置計時的起點 (單調時鐘，不受系統時間調整影響)
+        synchronized (trackEngine) {
+            trackEngine.start(startTime, totalDistance, timeOffset);
+            splitEngine.start(totalDistance, timeOffset);
+            rollingStats.start(totalDistance, timeOffset);
+            pathSimplifier.reset();
+        }
+        elevationTracker.start();
+        fixPipeline.reset();
+        if (runJournal != null) {
+            runJournal.beginRun(startTime, totalDistance, timeOffset);
+        }
+        startTracking();
     }
 
-    private void broadcastUpdate() {
-        // *** 核心修改：計算總時間時，要加上之前已跑的時間偏移量 ***
-        long now = System.currentTimeMillis();
-        long elapsedTimeMillis = (now - startTime) + timeOffset; // 當前經過時間 + 暫停前的時間
+    /**
+     * 依照目前的跑步狀態開始定位與計時 (追蹤執行緒)
+     */
+    private void startTracking() {
+        samplingScheduler.setPaused(trackEngine.isPaused());
+        elevationTracker.setPaused(trackEngine.isPaused());
+        startLocationUpdates();
+        startPressureUpdates();
+        publishUpdate();
+    }
 
-        Intent intent = new Intent(ACTION_BROADCAST);
-        intent.putExtra(EXTRA_DISTANCE, totalDistance);
-        intent.putExtra(EXTRA_ELAPSED_TIME, elapsedTimeMillis);
-        intent.putExtra(EXTRA_LOCATION_NAME, currentLocationName);
+    /**
+     * 重播日誌，把距離、計時起點和定位點還原到 TrackEngine
+     */
+    private boolean recoverFromJournal() {
+        if (runJournal == null) {
+            return false;
+        }
+        boolean recovered;
+        synchronized (trackEngine) {
+            recovered = runJournal.replay(new RunJournal.Replay() {
+                @Override
+                public void onStart(long baseTime, double distanceOffset, long timeOffset) {
+                    trackEngine.start(baseTime, distanceOffset, timeOffset);
+                    splitEngine.start(distanceOffset, timeOffset);
+                    rollingStats.start(distanceOffset, timeOffset);
+                    pathSimplifier.reset();
+                }
+
+                @Override
+                public void onFix(double latitude, double longitude, long timeMillis, float accuracy) {
+                    acceptFix(latitude, longitude, timeMillis, accuracy);
+                }
 
-        if (latestLocation != null) {
-            intent.putExtra(EXTRA_LOCATION, latestLocation);
+                @Override
+                public void onPause(long timeMillis) {
+                    trackEngine.pause(timeMillis);
+                }
+
+                @Override
+                public void onResume(long timeMillis) {
+                    trackEngine.resume(timeMillis);
+                }
+
+                @Override
+                public void onLap(long timeMillis) {
+                    splitEngine.markLap(trackEngine.getTotalDistance(), trackEngine.getElapsedMillis(timeMillis));
+                }
+            });
+        }
+        if (recovered) {
+            Log.d(TAG, "Recovered run from journal. Distance: " + trackEngine.getTotalDistance()
+                    + ", Fixes: " + trackEngine.getFixCount());
         }
-        LocalBroadcastManager.getInstance(this).sendBroadcast(intent);
+        return recovered;
+    }
+
+    private void pauseRun() {
+        if (trackEngine.isPaused()) return;
+        long now = SystemClock.elapsedRealtime();
+        trackEngine.pause(now);
+        if (runJournal != null) {
+            runJournal.appendPause(now);
+        }
+        samplingScheduler.setPaused(true);
+        elevationTracker.setPaused(true);
+        startLocationUpdates();
+        publishUpdate();
+        updateNotification(true);
+        Log.d(TAG, "Run paused at " + trackEngine.getElapsedMillis(now) + " ms");
+    }
+
+    private void resumeRun() {
+        if (!trackEngine.isPaused()) return;
+        long now = SystemClock.elapsedRealtime();
+        trackEngine.resume(now);
+        if (runJournal != null) {
+            runJournal.appendResume(now);
+        }
+        samplingScheduler.setPaused(false);
+        elevationTracker.setPaused(false);
+        startLocationUpdates();
+        publishUpdate();
+        updateNotification(true);
+        Log.d(TAG, "Run resumed");
+    }
+
+    private void markLap() {
+        if (trackEngine.isPaused()) return;
+        long now = SystemClock.elapsedRealtime();
+        synchronized (trackEngine) {
+            splitEngine.markLap(trackEngine.getTotalDistance(), trackEngine.getElapsedMillis(now));
+        }
+        if (runJournal != null) {
+            runJournal.appendLap(now);
+        }
+        Log.d(TAG, "Lap " + splitEngine.getLapCount() + " marked");
+    }
+
+    /**
+     * 只在狀態改變時發佈 (開始、暫停、繼續、新的定位點、地名)：快照帶著計時基準，
+     * 碼表由畫面自己依 RunSnapshot.elapsedAt 推算，不再需要每 50 毫秒喚醒一次
+     */
+    private void publishUpdate() {
+        long now = SystemClock.elapsedRealtime();
+        stateChannel.publish(trackEngine.snapshot(now, currentLocationName, rollingStats, elevationTracker));
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
-        stopTimer();
+        stopping = true;
         if (fusedLocationClient != null && locationCallback != null) {
             fusedLocationClient.removeLocationUpdates(locationCallback);
         }
+        unregisterReceiver(powerStateReceiver);
+        if (sensorManager != null) {
+            sensorManager.unregisterListener(pressureListener);
+        }
+        // 通知與日誌都屬於追蹤執行緒，收尾也在那裡做完再結束執行緒
+        trackingHandler.post(() -> {
+            runNotifier.cancel();
+            // 正常停止 (不是被系統砍掉)，不需要再還原
+            if (runJournal != null) {
+                runJournal.clear();
+                try {
+                    runJournal.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to close run journal.", e);
+                }
+                runJournal = null;
+            }
+        });
+        trackingThread.quitSafely();
         Log.d(TAG, "Service onDestroy");
     }
 
     // --- 以下為未變動的方法 ---
 
-    private void stopTimer() {
-        if (timerRunnable != null) {
-            timerHandler.removeCallbacks(timerRunnable);
-        }
-    }
-
-    private void startForegroundService() {
-        Intent notificationIntent = new Intent(this, SecondActivity.class);
-        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, notificationIntent, PendingIntent.FLAG_IMMUTABLE);
-
-        Notification notification = new NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ID)
-                .setContentTitle("跑步追蹤中")
-                .setContentText("距離: 0 公尺")
-                .setSmallIcon(R.mipmap.ic_launcher)
-                .setContentIntent(pendingIntent)
-                .setOnlyAlertOnce(true)
-                .build();
-
+    /**
+     * RunNotifier 只在追蹤執行緒上使用，startForeground 也從這裡呼叫 (可以在任何執行緒上呼叫)
+     */
+    private void startForegroundService(double distanceMeters, long elapsedMillis, boolean paused) {
+        Notification notification = runNotifier.build(distanceMeters, elapsedMillis, paused);
         startForeground(NOTIFICATION_ID, notification);
     }
 
@@ -180,18 +494,66 @@ public class RunningService extends Service {
         }
     }
 
+    private void registerPowerStateReceiver() {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        filter.addAction(Intent.ACTION_BATTERY_LOW);
+        filter.addAction(Intent.ACTION_BATTERY_OKAY);
+        registerReceiver(powerStateReceiver, filter, null, trackingHandler);
+
+        PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+        samplingScheduler.setPowerSaveMode(powerManager != null && powerManager.isPowerSaveMode());
+        BatteryManager batteryManager = (BatteryManager) getSystemService(BATTERY_SERVICE);
+        if (batteryManager != null) {
+            int percent = batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+            samplingScheduler.setBatteryLow(percent > 0 && percent <= LOW_BATTERY_PERCENT);
+        }
+    }
+
+    /**
+     * 依照 SamplingScheduler 目前的建議送出定位請求，同一個 callback 再次請求會直接取代原本的設定
+     */
     private void startLocationUpdates() {
-        LocationRequest locationRequest = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, 5000)
-                .setMinUpdateIntervalMillis(2000)
+        SamplingScheduler.Profile profile = samplingScheduler.getProfile();
+        LocationRequest locationRequest = new LocationRequest.Builder(toPriority(profile.accuracy), profile.intervalMillis)
+                .setMinUpdateIntervalMillis(profile.minIntervalMillis)
+                .setMinUpdateDistanceMeters(profile.minDistanceMeters)
+                .setMaxUpdateDelayMillis(profile.maxDelayMillis)
                 .build();
+        requestedProfile = profile;
+        Log.d(TAG, "Requesting location updates with profile " + profile);
 
         try {
-            fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, Looper.getMainLooper());
+            fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, trackingThread.getLooper());
         } catch (SecurityException e) {
             Log.e(TAG, "Location permission not granted.", e);
         }
     }
 
+    /**
+     * 有氣壓計時才註冊；使用非喚醒型感測器並允許批次回報，螢幕關閉時資料會先留在感測器 FIFO
+     */
+    private void startPressureUpdates() {
+        if (pressureSensor == null) {
+            Log.d(TAG, "No pressure sensor, using GPS altitude for elevation.");
+            return;
+        }
+        sensorManager.registerListener(pressureListener, pressureSensor,
+                PRESSURE_SAMPLING_PERIOD_US, PRESSURE_MAX_REPORT_LATENCY_US, trackingHandler);
+    }
+
+    private static int toPriority(SamplingScheduler.Accuracy accuracy) {
+        switch (accuracy) {
+            case HIGH:
+                return Priority.PRIORITY_HIGH_ACCURACY;
+            case LOW:
+                return Priority.PRIORITY_LOW_POWER;
+            case BALANCED:
+            default:
+                return Priority.PRIORITY_BALANCED_POWER_ACCURACY;
+        }
+    }
+
     private void createLocationCallback() {
         locationCallback = new LocationCallback() {
             @Override
@@ -206,37 +568,102 @@ public class RunningService extends Service {
     }
 
     private void processNewLocation(Location newLocation) {
-        latestLocation = newLocation;
-        if (previousLocation != null) {
-            float distance = previousLocation.distanceTo(newLocation);
-            if (distance > DISTANCE_NOISE_THRESHOLD) {
-                totalDistance += distance;
-                previousLocation = newLocation;
-                updateNotification();
+        if (stopping) {
+            return;
+        }
+        // 定位點時間使用和計時相同的單調時鐘，才能換算成該點的跑步經過時間 (分段內插需要)
+        long fixTime = newLocation.getElapsedRealtimeNanos() / 1_000_000L;
+        // 先經過清理管線，被判定為跳點的定位點不會進入 TrackEngine、日誌與地圖
+        if (fixPipeline.process(filteredFix.set(newLocation.getLatitude(), newLocation.getLongitude(),
+                fixTime, newLocation.getAccuracy()))) {
+            long previousFixCount = trackEngine.getFixCount();
+            boolean moved;
+            synchronized (trackEngine) {
+                moved = acceptFix(filteredFix.latitude, filteredFix.longitude, filteredFix.timeMillis, filteredFix.accuracy);
+            }
+            // 只記錄被接受 (已平滑) 的定位點，重播時會得到完全相同的距離與分段
+            if (runJournal != null && trackEngine.getFixCount() != previousFixCount) {
+                runJournal.appendFix(filteredFix.latitude, filteredFix.longitude, filteredFix.timeMillis, filteredFix.accuracy);
+                runJournal.flushIfDue(SystemClock.elapsedRealtime());
+            }
+            if (moved) {
+                updateNotification(false);
+            }
+            updateAreaName(filteredFix.latitude, filteredFix.longitude);
+
+            // 取樣設定也只看清理過的定位點，一個跳點不會把設定拉到 RUNNING
+            double speed = newLocation.hasSpeed() ? newLocation.getSpeed() : Double.NaN;
+            samplingScheduler.onFix(filteredFix.timeMillis, filteredFix.latitude, filteredFix.longitude, speed);
+            if (samplingScheduler.getProfile() != requestedProfile) {
+                startLocationUpdates();
             }
-        } else {
-            // 這是第一次獲取位置，特別是在「繼續」時
-            previousLocation = newLocation;
         }
-    }
 
-    private void updateNotification() {
-        String distanceText = String.format(Locale.getDefault(), "距離: %.0f 公尺", totalDistance);
-        NotificationManager manager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+        if (newLocation.hasAltitude()) {
+            elevationTracker.onGpsAltitude(fixTime, newLocation.getAltitude());
+        }
 
-        Intent notificationIntent = new Intent(this, SecondActivity.class);
-        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, notificationIntent, PendingIntent.FLAG_IMMUTABLE);
+        // 距離、位置、配速與爬升都跟著定位更新，內容沒變時 RunStateChannel 會忽略
+        publishUpdate();
+    }
 
-        Notification notification = new NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ID)
-                .setContentTitle("跑步追蹤中")
-                .setContentText(distanceText)
-                .setSmallIcon(R.mipmap.ic_launcher)
-                .setContentIntent(pendingIntent)
-                .setOnlyAlertOnce(true)
-                .build();
+    /**
+     * 跑進新的 geohash 格子時更新地名：查過的格子直接用快取，否則在共用的查詢執行緒上查詢 (追蹤執行緒)
+     */
+    private void updateAreaName(double latitude, double longitude) {
+        String cell = AreaNameResolver.cellOf(latitude, longitude);
+        if (cell.equals(areaCell)) {
+            return;
+        }
+        areaCell = cell;
+        String cached = areaNameResolver.resolve(latitude, longitude, trackingHandler::post, (resolvedCell, name) -> {
+            // 查詢期間已經跑到別的格子時忽略；查不到時保留原本的地名，還沒有任何地名才顯示「未知區域」
+            if (!resolvedCell.equals(areaCell)) {
+                return;
+            }
+            if (name != null) {
+                currentLocationName = name;
+                publishUpdate();
+            } else if (LOCATION_NAME_PENDING.equals(currentLocationName)) {
+                currentLocationName = UNKNOWN_AREA_NAME;
+                publishUpdate();
+            }
+        });
+        if (cached != null) {
+            currentLocationName = cached;
+        }
+    }
 
-        if (manager != null) {
-            manager.notify(NOTIFICATION_ID, notification);
+    /**
+     * 把定位點交給 TrackEngine 與簡化軌跡，距離增加時同步更新分段與配速統計 (呼叫端必須持有 trackEngine 的鎖)
+     */
+    private boolean acceptFix(double latitude, double longitude, long timeMillis, float accuracy) {
+        long previousFixCount = trackEngine.getFixCount();
+        boolean moved = trackEngine.addFix(latitude, longitude, timeMillis, accuracy);
+        if (trackEngine.getFixCount() != previousFixCount) {
+            pathSimplifier.add(latitude, longitude, timeMillis);
+        }
+        if (moved) {
+            double distance = trackEngine.getTotalDistance();
+            long elapsed = trackEngine.getElapsedMillis(timeMillis);
+            splitEngine.onProgress(distance, elapsed);
+            rollingStats.onProgress(distance, elapsed);
+        }
+        return moved;
+    }
+
+    /**
+     * @param immediate 狀態轉換時立刻更新，一般的距離變化則交給 RunNotifier 合併
+     */
+    private void updateNotification(boolean immediate) {
+        long now = SystemClock.elapsedRealtime();
+        double distance = trackEngine.getTotalDistance();
+        long elapsed = trackEngine.getElapsedMillis(now);
+        boolean paused = trackEngine.isPaused();
+        if (immediate) {
+            runNotifier.updateNow(distance, elapsed, paused);
+        } else {
+            runNotifier.update(distance, elapsed, paused);
         }
     }
 }
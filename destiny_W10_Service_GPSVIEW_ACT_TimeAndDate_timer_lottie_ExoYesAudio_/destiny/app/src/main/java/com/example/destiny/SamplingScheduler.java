@@ -0,0 +1,174 @@
+package com.example.destiny;
+
+/**
+ * 依照速度與是否靜止，動態決定 GPS 取樣設定
+ *
+ * 跑步中用高頻率高精度，走路時放慢，停在紅綠燈等靜止狀態時改用省電的定位來源；
+ * 暫停、系統省電模式與低電量也透過同一個機制降級 (並允許晶片批次回報)。RunningService 在設定改變時重新送出 LocationRequest。
+ */
+public final class SamplingScheduler {
+
+    public enum Accuracy {
+        HIGH, BALANCED, LOW
+    }
+
+    /**
+     * 一組定位請求設定
+     */
+    public enum Profile {
+        RUNNING(Accuracy.HIGH, 2000, 1000, 0f, 0),
+        WALKING(Accuracy.HIGH, 5000, 2000, 2f, 0),
+        // 靜止時不批次回報，重新起跑時才能馬上拿到定位點
+        STATIONARY(Accuracy.BALANCED, 15000, 5000, 5f, 0),
+        PAUSED(Accuracy.BALANCED, 30000, 10000, 10f, 60000),
+        // 系統省電模式：仍維持 GPS 精度，但拉長間隔並讓晶片批次回報
+        BATTERY_SAVER(Accuracy.HIGH, 10000, 5000, 5f, 30000),
+        // 電量過低：只保留最基本的追蹤
+        LOW_BATTERY(Accuracy.BALANCED, 20000, 10000, 10f, 60000);
+
+        public final Accuracy accuracy;
+        public final long intervalMillis;
+        public final long minIntervalMillis;
+        public final float minDistanceMeters;
+        public final long maxDelayMillis;
+
+        Profile(Accuracy accuracy, long intervalMillis, long minIntervalMillis,
+                float minDistanceMeters, long maxDelayMillis) {
+            this.accuracy = accuracy;
+            this.intervalMillis = intervalMillis;
+            this.minIntervalMillis = minIntervalMillis;
+            this.minDistanceMeters = minDistanceMeters;
+            this.maxDelayMillis = maxDelayMillis;
+        }
+    }
+
+    // 速度門檻 (公尺/秒)
+    private static final double RUNNING_SPEED = 2.0;
+    private static final double STATIONARY_SPEED = 0.5;
+    // 靜止判定時允許的速度標準差，抖動太大代表訊號不穩，不當作靜止
+    private static final double STATIONARY_SPEED_STDDEV = 0.5;
+    // 新的設定要持續這麼久才會切換，避免在門檻附近反覆重送請求
+    private static final long MIN_DWELL_MS = 15000;
+    private static final double SPEED_SMOOTHING = 0.3;
+    private static final int WINDOW = 8;
+
+    // 最近幾個速度樣本 (環狀緩衝區)，用來算變異數
+    private final double[] speeds = new double[WINDOW];
+    private int speedCount = 0;
+    private int speedIndex = 0;
+    private double smoothedSpeed = 0;
+
+    private boolean hasLastFix = false;
+    private double lastLatitude;
+    private double lastLongitude;
+    private long lastTime;
+
+    private boolean paused = false;
+    private boolean powerSaveMode = false;
+    private boolean batteryLow = false;
+
+    private Profile motionProfile = Profile.WALKING;
+    private Profile candidate = Profile.WALKING;
+    private long candidateSince = 0;
+
+    /**
+     * 餵入一個新的定位點
+     * @param speedMps 裝置回報的速度，沒有時傳 Double.NaN，會改用前後兩點推算
+     * @return 建議的設定是否因此改變
+     */
+    public boolean onFix(long timeMillis, double latitude, double longitude, double speedMps) {
+        Profile before = getProfile();
+        double speed = speedMps;
+        if (Double.isNaN(speed) && hasLastFix && timeMillis > lastTime) {
+            speed = GeoDistance.distance(lastLatitude, lastLongitude, latitude, longitude)
+                    / ((timeMillis - lastTime) / 1000.0);
+        }
+        hasLastFix = true;
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        lastTime = timeMillis;
+
+        if (!Double.isNaN(speed)) {
+            addSpeedSample(speed);
+            updateMotionProfile(timeMillis);
+        }
+        return before != getProfile();
+    }
+
+    private void addSpeedSample(double speed) {
+        speeds[speedIndex] = speed;
+        speedIndex = (speedIndex + 1) % WINDOW;
+        if (speedCount < WINDOW) speedCount++;
+        smoothedSpeed = speedCount == 1 ? speed : smoothedSpeed + SPEED_SMOOTHING * (speed - smoothedSpeed);
+    }
+
+    private void updateMotionProfile(long timeMillis) {
+        Profile next;
+        if (smoothedSpeed >= RUNNING_SPEED) {
+            next = Profile.RUNNING;
+        } else if (smoothedSpeed < STATIONARY_SPEED && speedStdDev() < STATIONARY_SPEED_STDDEV) {
+            next = Profile.STATIONARY;
+        } else {
+            next = Profile.WALKING;
+        }
+
+        if (next == motionProfile) {
+            candidate = motionProfile;
+            return;
+        }
+        if (next != candidate) {
+            candidate = next;
+            candidateSince = timeMillis;
+        }
+        // 開始移動時要立刻提高取樣，其他情況則需要維持一段時間才切換
+        boolean speedingUp = motionProfile == Profile.STATIONARY;
+        if (speedingUp || timeMillis - candidateSince >= MIN_DWELL_MS) {
+            motionProfile = next;
+        }
+    }
+
+    private double speedStdDev() {
+        if (speedCount < 2) return Double.MAX_VALUE;
+        double sum = 0;
+        for (int i = 0; i < speedCount; i++) sum += speeds[i];
+        double mean = sum / speedCount;
+        double squares = 0;
+        for (int i = 0; i < speedCount; i++) {
+            double d = speeds[i] - mean;
+            squares += d * d;
+        }
+        return Math.sqrt(squares / (speedCount - 1));
+    }
+
+    public boolean setPaused(boolean paused) {
+        Profile before = getProfile();
+        this.paused = paused;
+        return before != getProfile();
+    }
+
+    public boolean setPowerSaveMode(boolean powerSaveMode) {
+        Profile before = getProfile();
+        this.powerSaveMode = powerSaveMode;
+        return before != getProfile();
+    }
+
+    public boolean setBatteryLow(boolean batteryLow) {
+        Profile before = getProfile();
+        this.batteryLow = batteryLow;
+        return before != getProfile();
+    }
+
+    /**
+     * 目前建議的定位設定 (暫停 > 低電量 > 省電模式 > 依速度判斷)
+     */
+    public Profile getProfile() {
+        if (paused) return Profile.PAUSED;
+        if (batteryLow) return Profile.LOW_BATTERY;
+        if (powerSaveMode && motionProfile != Profile.STATIONARY) return Profile.BATTERY_SAVER;
+        return motionProfile;
+    }
+
+    public double getSmoothedSpeed() {
+        return smoothedSpeed;
+    }
+}
@@ -2,20 +2,21 @@ package com.example.destiny;
 
 import android.Manifest;
 import android.annotation.SuppressLint;
-import android.content.BroadcastReceiver;
+import android.app.ActivityManager;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
+import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
 import android.graphics.Color;
-import android.location.Address;
-import android.location.Geocoder;
 import android.location.Location;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.IBinder;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.util.Log;
 import android.view.View;
@@ -27,7 +28,6 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import androidx.media3.common.AudioAttributes;
 import androidx.media3.common.C;
@@ -40,18 +40,19 @@ import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 
 import org.osmdroid.config.Configuration;
-import org.osmdroid.tileprovider.tilesource.TileSourceFactory;
+import org.osmdroid.events.MapEventsReceiver;
+import org.osmdroid.tileprovider.BitmapPool;
+import org.osmdroid.util.BoundingBox;
 import org.osmdroid.util.GeoPoint;
 import org.osmdroid.views.MapView;
-import org.osmdroid.views.overlay.Polyline;
+import org.osmdroid.views.overlay.MapEventsOverlay;
 import org.osmdroid.views.overlay.mylocation.GpsMyLocationProvider;
 import org.osmdroid.views.overlay.mylocation.MyLocationNewOverlay;
 
+import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
@@ -60,8 +61,19 @@ public class SecondActivity extends AppCompatActivity {
     private static final String TAG = "SecondActivity";
 
     // UI 元件
-    private TextView tvHeaderInfo, tvMainDistance, tvMainTimer;
-    private Button btnStartStop, btnNextStep;
+    private TextView tvHeaderInfo, tvMainDistance, tvMainTimer, tvMainPace;
+    // 跑步數字的文字 buffer 與目前顯示中的值 (只在主執行緒上使用)
+    private final char[] distanceChars = new char[RunTextFormatter.BUFFER_SIZE];
+    private final char[] timerChars = new char[RunTextFormatter.BUFFER_SIZE];
+    private final char[] paceChars = new char[RunTextFormatter.BUFFER_SIZE];
+    private long shownDistanceMeters = Long.MIN_VALUE;
+    private long shownTimerTicks = Long.MIN_VALUE;
+    private long shownPaceSeconds = Long.MIN_VALUE;
+    private boolean shownWithHundredths = true;
+    // 視窗沒有焦點 (例如拉下通知欄、分割畫面的另一邊) 時只顯示到秒，碼表也只每秒更新
+    private boolean showHundredths = true;
+    private final RunStopwatch stopwatch = new RunStopwatch(this::onStopwatchTick);
+    private Button btnStartStop, btnNextStep, btnLap;
     private MapView mapView;
     private LottieAnimationView lottieAnimationView;
 
@@ -69,14 +81,24 @@ public class SecondActivity extends AppCompatActivity {
 
     // 地圖與路徑相關
     private MyLocationNewOverlay myLocationOverlay;
-    private Polyline pathPolyline;
-    private final List<GeoPoint> pathPoints = new ArrayList<>();
+    private RouteOverlay routeOverlay;
+    // 地圖已經處理過的定位點數量，以及已經畫上去的簡化頂點數量 (= 下一個要畫的頂點序號)
+    private long renderedFixCount = 0;
+    private int renderedVertexCount = 0;
+    // 從 Service 一次複製新頂點用的暫存區 (重複使用)
+    private final PackedTrack pathBuffer = new PackedTrack();
+    // 最後一個頂點到目前位置的那一段 (還沒被簡化器確定，每次更新都會替換)
+    private final TrackEngine.FixSink tailReader =
+            (seq, latitude, longitude, timeMillis) -> routeOverlay.setLiveTail(latitude, longitude);
 
     // 狀態變數 (以下為您原有的程式碼)
     private boolean isTracking = false;
     private boolean isPaused = false;
     private float totalDistance = 0f;
     private long elapsedTimeMillis = 0;
+    private double currentPace = Double.NaN;
+    private double elevationGain = 0;
+    private double elevationLoss = 0;
     private String currentLocationName = "獲取中...";
 
     private int consecutiveClickCount = 0;
@@ -86,29 +108,61 @@ public class SecondActivity extends AppCompatActivity {
 
     private static final float TARGET_DISTANCE_METERS = 100f;
     private static final int TARGET_TIME_SECONDS = 10;
+    private static final String STATE_NEXT_STEP_UNLOCKED = "next_step_unlocked";
+    // 畫面重建前已經解鎖 (包含連點解鎖)，連上 Service 時直接還原，不再播放提示
+    private boolean nextStepUnlockedBeforeRecreate = false;
+    // 離線地圖下載目前畫面往下再多幾層 zoom
+    private static final int OFFLINE_EXTRA_ZOOM_LEVELS = 2;
+    // hardware bitmap 預設關閉：osmdroid 用低 zoom 圖磚縮放補圖時會畫到軟體 Canvas 上，hardware bitmap 不支援
+    private static final boolean USE_HARDWARE_TILE_BITMAPS = false;
 
     private FusedLocationProviderClient fusedLocationClient;
     private ActivityResultLauncher<String[]> permissionRequest;
     private final Handler clockHandler = new Handler(Looper.getMainLooper());
     private Runnable clockRunnable;
+    private Thread precacheThread;
+    // 依跑步方向預先下載前方的圖磚 (圖源不允許時為 null)
+    private TilePrefetcher tilePrefetcher;
+    // 圖磚的記憶體預算、解碼格式與快取統計
+    private final TileCacheStats tileCacheStats = new TileCacheStats();
+    private PooledTileSource tileSource;
+
+    // 與 RunningService 的連線 (取代原本的 LocalBroadcastManager 廣播)
+    private RunningService.LocalBinder serviceBinder;
+    // 畫面看得到時才訂閱狀態更新，回到畫面時一次補上錯過的狀態
+    private RunPresenter runPresenter;
+
+    private final RunStateChannel.Listener runUpdateListener = snapshot -> {
+        totalDistance = (float) snapshot.distanceMeters;
+        currentLocationName = snapshot.locationName;
+        currentPace = snapshot.paceSecondsPerKm;
+        elevationGain = snapshot.elevationGain;
+        elevationLoss = snapshot.elevationLoss;
+
+        if (snapshot.fixCount != renderedFixCount) {
+            prefetchTilesAhead(snapshot);
+            updateMap(snapshot.fixCount);
+        }
+        updateRunningUI();
+        // 碼表改用快照的計時基準在本地推算 (也會更新時間並檢查解鎖條件)
+        stopwatch.setSnapshot(snapshot);
+    };
 
-    private final BroadcastReceiver runningUpdateReceiver = new BroadcastReceiver() {
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            if (intent.getAction() != null && intent.getAction().equals(RunningService.ACTION_BROADCAST)) {
-                totalDistance = intent.getFloatExtra(RunningService.EXTRA_DISTANCE, 0);
-                elapsedTimeMillis = intent.getLongExtra(RunningService.EXTRA_ELAPSED_TIME, 0);
-                currentLocationName = intent.getStringExtra(RunningService.EXTRA_LOCATION_NAME);
-
-                if (intent.hasExtra(RunningService.EXTRA_LOCATION)) {
-                    Location location = intent.getParcelableExtra(RunningService.EXTRA_LOCATION);
-                    if (location != null) {
-                        updateMap(location);
-                    }
-                }
-                updateRunningUI();
-                checkUnlockConditions();
-            }
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            serviceBinder = (RunningService.LocalBinder) service;
+            // Service 保有跑步狀態與完整路線：Activity 重建或從通知回來時，直接從它還原
+            restoreFromService();
+            runPresenter.attach(serviceBinder);
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            serviceBinder = null;
+            runPresenter.detach();
+            // Service 不在了，碼表停在最後的時間
+            stopwatch.setSnapshot(null);
         }
     };
 
@@ -116,6 +170,9 @@ public class SecondActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_second);
+        if (savedInstanceState != null) {
+            nextStepUnlockedBeforeRecreate = savedInstanceState.getBoolean(STATE_NEXT_STEP_UNLOCKED, false);
+        }
 
         // 步驟 1: 先初始化地圖設定
         Context ctx = getApplicationContext();
@@ -150,6 +207,10 @@ public class SecondActivity extends AppCompatActivity {
         initPermissionLauncher();
         setupListeners();
         fetchInitialLocation();
+
+        runPresenter = new RunPresenter(this, runUpdateListener);
+        // 不使用 BIND_AUTO_CREATE：Service 由 start/stop 控制生命週期，這裡只負責在它存在時連上
+        bindService(new Intent(this, RunningService.class), serviceConnection, 0);
     }
 
     @Override
@@ -158,10 +219,17 @@ public class SecondActivity extends AppCompatActivity {
             pageEnterPlayer.release();
             pageEnterPlayer = null;
         }
+        runPresenter.detach();
+        if (precacheThread != null) {
+            precacheThread.interrupt();
+        }
+        if (tilePrefetcher != null) {
+            tilePrefetcher.stop();
+        }
         try {
-            LocalBroadcastManager.getInstance(this).unregisterReceiver(runningUpdateReceiver);
-        } catch (Exception e) {
-            Log.w(TAG, "Receiver not registered or already unregistered.", e);
+            unbindService(serviceConnection);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Service not bound or already unbound.", e);
         }
         super.onDestroy();
     }
@@ -186,11 +254,63 @@ public class SecondActivity extends AppCompatActivity {
 
     // --- 以下為您所有的既有方法，完全不變 ---
 
-    private void updateMap(Location location) {
-        if (mapView == null) return;
-        GeoPoint currentGeoPoint = new GeoPoint(location.getLatitude(), location.getLongitude());
-        pathPoints.add(currentGeoPoint);
-        pathPolyline.setPoints(pathPoints);
+    /**
+     * 只把還沒畫過的簡化頂點一次複製給 RouteOverlay，不重建整條線；最後一段另外當作 live tail 畫
+     */
+    private void updateMap(long fixCount) {
+        if (mapView == null || serviceBinder == null) return;
+        if (fixCount < renderedFixCount) {
+            // Service 開始了新的跑步
+            clearPath();
+        }
+        renderedFixCount = fixCount;
+        pathBuffer.clear();
+        renderedVertexCount = serviceBinder.copyPathSince(renderedVertexCount, pathBuffer);
+        routeOverlay.addVertices(pathBuffer);
+        if (!serviceBinder.readPathTail(tailReader)) {
+            routeOverlay.clearLiveTail();
+        }
+        mapView.invalidate();
+    }
+
+    /**
+     * 連上 Service 時，以 Service 的狀態為準還原畫面 (按鈕、數值與整條路線一次畫好)
+     */
+    private void restoreFromService() {
+        RunSnapshot snapshot = serviceBinder.getLatestSnapshot();
+        // 每個 Service 實例的頂點序號都從 0 開始，重新從頭複製
+        clearPath();
+        isTracking = true;
+        isPaused = snapshot != null && snapshot.paused;
+        btnStartStop.setText(isPaused ? "繼續" : "暫停");
+        btnLap.setEnabled(!isPaused);
+        if (isPaused) {
+            lottieAnimationView.pauseAnimation();
+            lottieAnimationView.setVisibility(View.INVISIBLE);
+        } else {
+            lottieAnimationView.setVisibility(View.VISIBLE);
+            lottieAnimationView.playAnimation();
+        }
+        if (myLocationOverlay != null && !isPaused) {
+            myLocationOverlay.disableFollowLocation();
+        }
+        // 已經達標時直接還原按鈕狀態，不重複顯示 Toast 和音效
+        if (snapshot != null && meetsUnlockTarget((float) snapshot.distanceMeters, snapshot.elapsedMillis)) {
+            btnNextStep.setEnabled(true);
+        }
+        // 有快照時由 RunPresenter 在畫面看得到時送來 (數值與整條路線一次補齊)
+        if (snapshot == null) {
+            updateMap(0);
+            updateRunningUI();
+        }
+    }
+
+    private void clearPath() {
+        if (routeOverlay != null) {
+            routeOverlay.clear();
+        }
+        renderedFixCount = 0;
+        renderedVertexCount = 0;
         mapView.invalidate();
     }
 
@@ -198,20 +318,50 @@ public class SecondActivity extends AppCompatActivity {
         tvHeaderInfo = findViewById(R.id.tv_header_info);
         tvMainDistance = findViewById(R.id.tv_main_distance);
         tvMainTimer = findViewById(R.id.tv_main_timer);
+        tvMainPace = findViewById(R.id.tv_main_pace);
         btnStartStop = findViewById(R.id.btn_start_stop);
         btnNextStep = findViewById(R.id.btn_next_step);
+        btnLap = findViewById(R.id.btn_lap);
         mapView = findViewById(R.id.mapView);
         lottieAnimationView = findViewById(R.id.lottie_animation_view);
     }
 
     private void setupMap() {
-        mapView.setTileSource(TileSourceFactory.MAPNIK);
+        // 圖磚快取大小與解碼格式依裝置記憶體決定，必須在建立 tile provider 之前設定
+        tileSource = new PooledTileSource(configureTileMemory().decodeMode, tileCacheStats);
+        // 先讀本機的離線圖磚封存檔，找不到才走網路
+        TileArchiveFile.register();
+        mapView.setTileProvider(createTileProvider());
+        mapView.setTileSource(tileSource);
         mapView.setMultiTouchControls(true);
 
-        pathPolyline = new Polyline();
-        pathPolyline.setColor(Color.BLUE);
-        pathPolyline.setWidth(10f);
-        mapView.getOverlays().add(pathPolyline);
+        // 預設的 OSM 圖源不允許大量 / 預先下載：沒有設定其他圖磚伺服器時，預先下載與離線地圖都不啟用，
+        // 不建立下載執行緒，也不註冊長按手勢
+        String urlTemplate = getString(R.string.offline_tile_url_template);
+        OsmdroidTileFetcher tileFetcher = OsmdroidTileFetcher.create(tileSource,
+                urlTemplate, Configuration.getInstance().getUserAgentValue());
+        if (tileFetcher != null) {
+            tilePrefetcher = new TilePrefetcher(tileFetcher);
+        }
+
+        if (!urlTemplate.isEmpty()) {
+            // 長按地圖：把目前畫面的範圍下載成離線地圖
+            mapView.getOverlays().add(new MapEventsOverlay(new MapEventsReceiver() {
+                @Override
+                public boolean singleTapConfirmedHelper(GeoPoint p) {
+                    return false;
+                }
+
+                @Override
+                public boolean longPressHelper(GeoPoint p) {
+                    precacheVisibleArea(urlTemplate);
+                    return true;
+                }
+            }));
+        }
+
+        routeOverlay = new RouteOverlay(Color.BLUE, 10f);
+        mapView.getOverlays().add(routeOverlay);
 
         myLocationOverlay = new MyLocationNewOverlay(new GpsMyLocationProvider(this), mapView);
         myLocationOverlay.enableMyLocation();
@@ -221,10 +371,25 @@ public class SecondActivity extends AppCompatActivity {
 
     private void setupListeners() {
         btnStartStop.setOnClickListener(v -> handleStartStopClick());
+        btnLap.setOnClickListener(v -> {
+            if (serviceBinder != null && isTracking && !isPaused) {
+                serviceBinder.markLap();
+                Toast.makeText(this, "已分圈", Toast.LENGTH_SHORT).show();
+            }
+        });
         btnNextStep.setOnClickListener(v -> {
             Intent intent = new Intent(SecondActivity.this, ThirdActivity.class);
             intent.putExtra("RUN_DISTANCE", totalDistance);
             intent.putExtra("RUN_TIME", elapsedTimeMillis);
+            intent.putExtra("RUN_ELEVATION_GAIN", elevationGain);
+            intent.putExtra("RUN_ELEVATION_LOSS", elevationLoss);
+            // 分段與分圈已經在 Service 裡算好，直接帶過去
+            if (serviceBinder != null && isTracking) {
+                intent.putExtra("RUN_SPLITS", serviceBinder.getSplitMillis());
+                intent.putExtra("RUN_LAPS", serviceBinder.getLapMillis());
+                intent.putExtra("RUN_LAP_DISTANCES", serviceBinder.getLapMeters());
+                intent.putExtra("RUN_PACE_ZONES", serviceBinder.getPaceZoneMillis());
+            }
             startActivity(intent);
 
             if (isTracking) {
@@ -249,7 +414,14 @@ public class SecondActivity extends AppCompatActivity {
     private void pauseTracking() {
         isPaused = true;
         btnStartStop.setText("繼續");
-        stopService(new Intent(this, RunningService.class));
+        btnLap.setEnabled(false);
+        // 暫停只是 Service 內部的狀態，不再停止 Service (定位訂閱與通知都保留)
+        if (serviceBinder != null) {
+            serviceBinder.pauseRun();
+        } else {
+            stopwatch.setSnapshot(null);
+            stopService(new Intent(this, RunningService.class));
+        }
         lottieAnimationView.pauseAnimation();
         lottieAnimationView.setVisibility(View.INVISIBLE);
         if (myLocationOverlay != null) {
@@ -260,6 +432,7 @@ public class SecondActivity extends AppCompatActivity {
     private void resumeTracking() {
         isPaused = false;
         btnStartStop.setText("暫停");
+        btnLap.setEnabled(true);
         lottieAnimationView.setVisibility(View.VISIBLE);
         lottieAnimationView.resumeAnimation();
 
@@ -267,6 +440,12 @@ public class SecondActivity extends AppCompatActivity {
             myLocationOverlay.disableFollowLocation();
         }
 
+        if (serviceBinder != null) {
+            serviceBinder.resumeRun();
+            return;
+        }
+
+        // 沒有連上 Service 時 (例如 Service 已經被停止)，才用舊的方式重新啟動並帶入已跑的距離與時間
         Intent serviceIntent = new Intent(this, RunningService.class);
         serviceIntent.putExtra("RESUME_DISTANCE", totalDistance);
         serviceIntent.putExtra("RESUME_TIME", elapsedTimeMillis);
@@ -283,6 +462,7 @@ public class SecondActivity extends AppCompatActivity {
         isTracking = true;
         isPaused = false;
         btnStartStop.setText("暫停");
+        btnLap.setEnabled(true);
         lottieAnimationView.setVisibility(View.VISIBLE);
         lottieAnimationView.playAnimation();
 
@@ -290,11 +470,7 @@ public class SecondActivity extends AppCompatActivity {
             myLocationOverlay.disableFollowLocation();
         }
 
-        pathPoints.clear();
-        if (pathPolyline != null) {
-            pathPolyline.setPoints(pathPoints);
-        }
-        mapView.invalidate();
+        clearPath();
         resetUIForNewRun();
 
         Intent serviceIntent = new Intent(this, RunningService.class);
@@ -309,17 +485,18 @@ public class SecondActivity extends AppCompatActivity {
     private void resetActivityState() {
         isTracking = false;
         isPaused = false;
+        stopwatch.setSnapshot(null);
         totalDistance = 0f;
         elapsedTimeMillis = 0;
+        currentPace = Double.NaN;
+        elevationGain = 0;
+        elevationLoss = 0;
 
-        pathPoints.clear();
-        if (pathPolyline != null) {
-            pathPolyline.setPoints(pathPoints);
-        }
-        mapView.invalidate();
+        clearPath();
         updateRunningUI();
         btnStartStop.setText("開始");
         btnNextStep.setEnabled(false);
+        btnLap.setEnabled(false);
         lottieAnimationView.cancelAnimation();
         lottieAnimationView.setVisibility(View.INVISIBLE);
 
@@ -332,20 +509,29 @@ public class SecondActivity extends AppCompatActivity {
     protected void onResume() {
         super.onResume();
         mapView.onResume();
-        LocalBroadcastManager.getInstance(this).registerReceiver(runningUpdateReceiver, new IntentFilter(RunningService.ACTION_BROADCAST));
+        if (tilePrefetcher != null) {
+            tilePrefetcher.setEnabled(true);
+        }
+        stopwatch.setVisible(true);
         startClock();
         if (!isTracking && !isPaused) {
             resetActivityState();
         }
+        if (nextStepUnlockedBeforeRecreate) {
+            btnNextStep.setEnabled(true);
+            nextStepUnlockedBeforeRecreate = false;
+        }
     }
 
     @Override
     protected void onPause() {
         super.onPause();
         mapView.onPause();
-        if (!isTracking) {
-            LocalBroadcastManager.getInstance(this).unregisterReceiver(runningUpdateReceiver);
+        if (tilePrefetcher != null) {
+            // 畫面看不到時不必預先下載
+            tilePrefetcher.setEnabled(false);
         }
+        stopwatch.setVisible(false);
         stopClock();
     }
 
@@ -391,8 +577,12 @@ public class SecondActivity extends AppCompatActivity {
     }
 
     private void resetUIForNewRun() {
+        stopwatch.setSnapshot(null);
         totalDistance = 0f;
         elapsedTimeMillis = 0;
+        currentPace = Double.NaN;
+        elevationGain = 0;
+        elevationLoss = 0;
         updateRunningUI();
         btnNextStep.setEnabled(false);
     }
@@ -404,9 +594,45 @@ public class SecondActivity extends AppCompatActivity {
         tvHeaderInfo.setText(headerText);
     }
 
+    /**
+     * 每次快照都會呼叫：文字寫進重複使用的 char[]，內容沒變的 TextView 不重新 setText
+     */
     private void updateRunningUI() {
-        tvMainDistance.setText(String.format(Locale.getDefault(), "%.0f", totalDistance));
-        tvMainTimer.setText(formatDuration(elapsedTimeMillis));
+        long distanceShown = Math.round(totalDistance);
+        if (distanceShown != shownDistanceMeters) {
+            shownDistanceMeters = distanceShown;
+            tvMainDistance.setText(distanceChars, 0, RunTextFormatter.formatDistance(totalDistance, distanceChars));
+        }
+        updateTimerText();
+        long paceShown = Double.isNaN(currentPace) || Double.isInfinite(currentPace) ? -1 : Math.round(currentPace);
+        if (paceShown != shownPaceSeconds) {
+            shownPaceSeconds = paceShown;
+            tvMainPace.setText(paceChars, 0, RunTextFormatter.formatPace(currentPace, paceChars));
+        }
+    }
+
+    private void updateTimerText() {
+        long timerShown = showHundredths ? elapsedTimeMillis / 10 : elapsedTimeMillis / 1000;
+        if (timerShown != shownTimerTicks || showHundredths != shownWithHundredths) {
+            shownTimerTicks = timerShown;
+            shownWithHundredths = showHundredths;
+            tvMainTimer.setText(timerChars, 0,
+                    RunTextFormatter.formatDuration(elapsedTimeMillis, timerChars, showHundredths));
+        }
+    }
+
+    private void onStopwatchTick(long elapsedMillis) {
+        elapsedTimeMillis = elapsedMillis;
+        updateTimerText();
+        checkUnlockConditions();
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasFocus) {
+        super.onWindowFocusChanged(hasFocus);
+        showHundredths = hasFocus;
+        stopwatch.setShowHundredths(hasFocus);
+        updateTimerText();
     }
 
     private void startClock() {
@@ -420,6 +646,94 @@ public class SecondActivity extends AppCompatActivity {
         clockHandler.post(clockRunnable);
     }
 
+    /**
+     * MapView 在 layout 裡建立時就掃描過 osmdroid 資料夾，
+     * 註冊封存檔格式或下載完新的封存檔後，都要重建 tile provider 才會讀到
+     */
+    private CountingTileProvider createTileProvider() {
+        return new CountingTileProvider(getApplicationContext(), tileSource, tileCacheStats);
+    }
+
+    /**
+     * 依 memory class 設定 osmdroid 記憶體快取的張數，回傳使用的預算
+     */
+    private TileMemoryPolicy configureTileMemory() {
+        ActivityManager activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+        TileMemoryPolicy policy = TileMemoryPolicy.forDevice(activityManager.getMemoryClass(),
+                activityManager.isLowRamDevice(),
+                getResources().getDisplayMetrics().widthPixels,
+                getResources().getDisplayMetrics().heightPixels,
+                USE_HARDWARE_TILE_BITMAPS, Build.VERSION.SDK_INT);
+        Configuration.getInstance().setCacheMapTileCount((short) policy.tileCount);
+        Configuration.getInstance().setCacheMapTileOvershoot((short) policy.overshoot);
+        Log.d(TAG, policy + ", about " + policy.estimatedHeapBytes() / 1024 + " KB");
+        return policy;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            // 記憶體吃緊：放掉等著被重複使用的 bitmap，記憶體快取本身交給 osmdroid 依容量管理
+            BitmapPool.getInstance().clearBitmapPool();
+            Log.d(TAG, "Trim memory (" + level + "), " + tileCacheStats);
+        }
+    }
+
+    /**
+     * 每個新的定位點交給 TilePrefetcher，讓跟隨定位平移地圖時前方的圖磚已經在快取裡
+     */
+    private void prefetchTilesAhead(RunSnapshot snapshot) {
+        if (tilePrefetcher == null || !snapshot.hasLocation) return;
+        tilePrefetcher.setViewport((int) Math.round(mapView.getZoomLevelDouble()), mapView.getWidth(), mapView.getHeight());
+        tilePrefetcher.onPosition(SystemClock.elapsedRealtime(), snapshot.latitude, snapshot.longitude);
+    }
+
+    /**
+     * @param urlTemplate 允許大量下載的圖磚伺服器 (只有設定了才會註冊長按手勢)
+     */
+    private void precacheVisibleArea(String urlTemplate) {
+        if (precacheThread != null && precacheThread.isAlive()) {
+            Toast.makeText(this, "離線地圖下載中", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        BoundingBox box = mapView.getBoundingBox();
+        int minZoom = (int) mapView.getZoomLevelDouble();
+        int maxZoom = Math.max(minZoom, Math.min(minZoom + OFFLINE_EXTRA_ZOOM_LEVELS, (int) mapView.getMaxZoomLevel()));
+        File target = new File(Configuration.getInstance().getOsmdroidBasePath(),
+                "area_" + System.currentTimeMillis() + "." + TileArchive.FILE_EXTENSION);
+        String sourceName = tileSource.name();
+        TilePrecacher precacher = new TilePrecacher(urlTemplate, getPackageName(),
+                TilePrecacher.DEFAULT_MAX_TILES, TilePrecacher.DEFAULT_MAX_BYTES);
+        Toast.makeText(this, "開始下載離線地圖", Toast.LENGTH_SHORT).show();
+
+        precacheThread = new Thread(() -> {
+            String message;
+            try {
+                TilePrecacher.Result result = precacher.precache(box.getLatNorth(), box.getLatSouth(),
+                        box.getLonEast(), box.getLonWest(), minZoom, maxZoom, target, sourceName, null);
+                Log.d(TAG, "Pre-cached " + result.tilesWritten + " tiles, " + result.bytesWritten
+                        + " bytes, failed: " + result.tilesFailed);
+                message = "離線地圖已下載 " + result.tilesWritten + " 張圖磚"
+                        + (result.byteBudgetReached ? " (已達容量上限)" : "");
+            } catch (IllegalArgumentException e) {
+                message = "範圍太大，請放大地圖後再試";
+            } catch (IOException e) {
+                Log.e(TAG, "Tile pre-cache failed", e);
+                message = "離線地圖下載失敗";
+            } catch (InterruptedException e) {
+                return;
+            }
+            String finalMessage = message;
+            runOnUiThread(() -> {
+                if (isDestroyed()) return;
+                mapView.setTileProvider(createTileProvider());
+                Toast.makeText(this, finalMessage, Toast.LENGTH_SHORT).show();
+            });
+        }, "TilePrecache");
+        precacheThread.start();
+    }
+
     private void stopClock() {
         if (clockRunnable != null) {
             clockHandler.removeCallbacks(clockRunnable);
@@ -427,35 +741,27 @@ public class SecondActivity extends AppCompatActivity {
     }
 
     private void updateLocationNameFromCoords(Location location) {
-        new Thread(() -> {
-            Geocoder geocoder = new Geocoder(this, Locale.TAIWAN);
-            try {
-                List<Address> addresses = geocoder.getFromLocation(location.getLatitude(), location.getLongitude(), 1);
-                if (addresses != null && !addresses.isEmpty()) {
-                    Address address = addresses.get(0);
-                    String city = address.getAdminArea();
-                    String district = address.getLocality();
-                    StringBuilder nameBuilder = new StringBuilder();
-                    if (city != null) nameBuilder.append(city);
-                    if (district != null) nameBuilder.append(" ").append(district);
-                    currentLocationName = nameBuilder.length() > 0 ? nameBuilder.toString() : "未知區域";
-                } else {
-                    currentLocationName = "無法解析地名";
-                }
-            } catch (IOException e) {
-                Log.e(TAG, "Geocoder failed", e);
-                currentLocationName = "位置服務錯誤";
-            }
-            runOnUiThread(this::updateHeaderInfo);
-        }).start();
+        // 同一個 geohash 格子查過就直接用快取，否則交給共用的查詢執行緒，查到後回到主執行緒更新
+        String cached = GeocoderLookup.sharedResolver(this).resolve(location.getLatitude(), location.getLongitude(),
+                this::runOnUiThread, (cell, name) -> {
+                    currentLocationName = name != null ? name : "無法解析地名";
+                    updateHeaderInfo();
+                });
+        if (cached != null) {
+            currentLocationName = cached;
+            updateHeaderInfo();
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putBoolean(STATE_NEXT_STEP_UNLOCKED, btnNextStep.isEnabled());
     }
 
-    private String formatDuration(long millis) {
-        long hours = TimeUnit.MILLISECONDS.toHours(millis);
-        long minutes = TimeUnit.MILLISECONDS.toMinutes(millis) % 60;
-        long seconds = TimeUnit.MILLISECONDS.toSeconds(millis) % 60;
-        long hundredths = (millis / 10) % 100;
-        return String.format(Locale.getDefault(), "%02d:%02d:%02d.%02d", hours, minutes, seconds, hundredths);
+    private static boolean meetsUnlockTarget(float distance, long elapsedMillis) {
+        return distance >= TARGET_DISTANCE_METERS
+                || TimeUnit.MILLISECONDS.toSeconds(elapsedMillis) >= TARGET_TIME_SECONDS;
     }
 
     private void checkUnlockConditions() {
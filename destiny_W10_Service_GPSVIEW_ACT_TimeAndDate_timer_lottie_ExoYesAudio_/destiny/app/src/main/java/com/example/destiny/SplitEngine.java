@@ -0,0 +1,159 @@
+package com.example.destiny;
+
+import java.util.Arrays;
+
+/**
+ * 分段 (每公里或自訂距離) 與手動分圈的計算
+ *
+ * 每次距離增加時只需要和上一次的距離 / 時間比較，用線性內插算出剛好跨過分段距離的時間，
+ * 不需要重新掃描整條軌跡。結果存在可成長的基本型別陣列中。
+ */
+public final class SplitEngine {
+
+    public static final double DEFAULT_SPLIT_METERS = 1000.0;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final double splitMeters;
+
+    // 上一次的進度 (累計距離 / 跑步經過時間)
+    private double lastDistance;
+    private long lastElapsed;
+    private double nextBoundary;
+    // 上一個分段結束的時間
+    private long splitStartElapsed;
+
+    private long[] splitMillis = new long[INITIAL_CAPACITY];
+    private int splitCount = 0;
+
+    private double lapStartDistance;
+    private long lapStartElapsed;
+    private long[] lapMillis = new long[INITIAL_CAPACITY];
+    private double[] lapMeters = new double[INITIAL_CAPACITY];
+    private int lapCount = 0;
+
+    public SplitEngine() {
+        this(DEFAULT_SPLIT_METERS);
+    }
+
+    public SplitEngine(double splitMeters) {
+        if (!(splitMeters > 0)) {
+            throw new IllegalArgumentException("splitMeters must be positive: " + splitMeters);
+        }
+        this.splitMeters = splitMeters;
+    }
+
+    /**
+     * 開始一次跑步
+     * @param distanceOffset 之前已跑的距離 (從暫停中繼續時，下一個分段從下一個整數倍開始)
+     * @param elapsedOffset 之前已跑的時間
+     */
+    public void start(double distanceOffset, long elapsedOffset) {
+        lastDistance = distanceOffset;
+        lastElapsed = elapsedOffset;
+        nextBoundary = (Math.floor(distanceOffset / splitMeters) + 1) * splitMeters;
+        splitStartElapsed = elapsedOffset;
+        splitCount = 0;
+        lapStartDistance = distanceOffset;
+        lapStartElapsed = elapsedOffset;
+        lapCount = 0;
+    }
+
+    /**
+     * 距離增加時呼叫 (每個被接受的定位點一次)
+     * @param distance 目前的累計距離
+     * @param elapsedMillis 這個定位點的跑步經過時間 (不含暫停)
+     * @return 這次新完成的分段數量 (通常是 0 或 1)
+     */
+    public int onProgress(double distance, long elapsedMillis) {
+        // 批次回報的定位點時間可能稍微倒退，不讓分段時間變成負的
+        long elapsed = Math.max(elapsedMillis, lastElapsed);
+        int completed = 0;
+        while (distance >= nextBoundary) {
+            double fraction = (nextBoundary - lastDistance) / (distance - lastDistance);
+            long crossing = lastElapsed + Math.round(fraction * (elapsed - lastElapsed));
+            appendSplit(crossing - splitStartElapsed);
+            splitStartElapsed = crossing;
+            nextBoundary += splitMeters;
+            completed++;
+        }
+        lastDistance = distance;
+        lastElapsed = elapsed;
+        return completed;
+    }
+
+    /**
+     * 手動分圈
+     * @param distance 分圈時的累計距離
+     * @param elapsedMillis 分圈時的跑步經過時間
+     */
+    public void markLap(double distance, long elapsedMillis) {
+        long elapsed = Math.max(elapsedMillis, lapStartElapsed);
+        if (lapCount == lapMillis.length) {
+            lapMillis = Arrays.copyOf(lapMillis, lapCount * 2);
+            lapMeters = Arrays.copyOf(lapMeters, lapCount * 2);
+        }
+        lapMillis[lapCount] = elapsed - lapStartElapsed;
+        lapMeters[lapCount] = distance - lapStartDistance;
+        lapCount++;
+        lapStartDistance = distance;
+        lapStartElapsed = elapsed;
+    }
+
+    private void appendSplit(long millis) {
+        if (splitCount == splitMillis.length) {
+            splitMillis = Arrays.copyOf(splitMillis, splitCount * 2);
+        }
+        splitMillis[splitCount++] = millis;
+    }
+
+    public double getSplitMeters() {
+        return splitMeters;
+    }
+
+    public int getSplitCount() {
+        return splitCount;
+    }
+
+    /**
+     * 第 index 個分段花費的時間 (毫秒)
+     */
+    public long getSplitMillis(int index) {
+        if (index < 0 || index >= splitCount) {
+            throw new IndexOutOfBoundsException("split " + index + " (count=" + splitCount + ")");
+        }
+        return splitMillis[index];
+    }
+
+    public int getLapCount() {
+        return lapCount;
+    }
+
+    public long getLapMillis(int index) {
+        if (index < 0 || index >= lapCount) {
+            throw new IndexOutOfBoundsException("lap " + index + " (count=" + lapCount + ")");
+        }
+        return lapMillis[index];
+    }
+
+    public double getLapMeters(int index) {
+        if (index < 0 || index >= lapCount) {
+            throw new IndexOutOfBoundsException("lap " + index + " (count=" + lapCount + ")");
+        }
+        return lapMeters[index];
+    }
+
+    /**
+     * 複製出所有分段時間 (給結束跑步時傳到 ThirdActivity)
+     */
+    public long[] copySplitMillis() {
+        return Arrays.copyOf(splitMillis, splitCount);
+    }
+
+    public long[] copyLapMillis() {
+        return Arrays.copyOf(lapMillis, lapCount);
+    }
+
+    public double[] copyLapMeters() {
+        return Arrays.copyOf(lapMeters, lapCount);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.destiny;
+
+/**
+ * 即時的軌跡簡化 (串流版 Douglas-Peucker / opening window，向前看的點數有上限)
+ *
+ * 從上一個頂點 (anchor) 開始累積候選點，每來一個新點就檢查：
+ * 所有候選點到 anchor→新點 這條線段的距離是否都在容許誤差內。
+ * 一旦超出，前一個點就成為新的頂點；候選點數量達到上限時也會強制輸出。
+ * 頂點一旦輸出就不會再改變，可以直接接到地圖的線上；最新的點 (tail) 另外提供。
+ * 每個點的成本最多是 O(maxLookahead)，與軌跡總長度無關。
+ * 頂點座標存放在 PackedTrack (E7 整數)，長時間跑步也只佔很少的記憶體。
+ */
+public final class StreamingSimplifier {
+
+    public static final double DEFAULT_TOLERANCE_METERS = 5.0;
+    public static final int DEFAULT_MAX_LOOKAHEAD = 64;
+    private static final int INITIAL_CAPACITY = 256;
+    private static final double METERS_PER_DEGREE = Math.toRadians(1) * GeoDistance.EARTH_RADIUS_METERS;
+
+    private final double tolerance;
+    private final int maxLookahead;
+
+    // 候選點 (anchor 之後、還沒決定是否保留的點)
+    private final double[] candidateLatitudes;
+    private final double[] candidateLongitudes;
+    private final long[] candidateTimes;
+    private int candidateCount = 0;
+
+    // 已輸出的頂點
+    private final PackedTrack vertices = new PackedTrack(INITIAL_CAPACITY);
+
+    public StreamingSimplifier() {
+        this(DEFAULT_TOLERANCE_METERS, DEFAULT_MAX_LOOKAHEAD);
+    }
+
+    public StreamingSimplifier(double toleranceMeters, int maxLookahead) {
+        if (maxLookahead < 1) {
+            throw new IllegalArgumentException("maxLookahead must be at least 1: " + maxLookahead);
+        }
+        this.tolerance = toleranceMeters;
+        this.maxLookahead = maxLookahead;
+        this.candidateLatitudes = new double[maxLookahead];
+        this.candidateLongitudes = new double[maxLookahead];
+        this.candidateTimes = new long[maxLookahead];
+    }
+
+    public void reset() {
+        candidateCount = 0;
+        vertices.clear();
+    }
+
+    /**
+     * 加入一個完整解析度的定位點
+     */
+    public void add(double latitude, double longitude, long timeMillis) {
+        if (vertices.size() == 0) {
+            vertices.add(latitude, longitude);
+            return;
+        }
+        if (candidateCount > 0 && !fitsWithinTolerance(latitude, longitude)) {
+            // 新點讓某個候選點偏離太多：前一個點成為頂點，從它重新開始
+            promoteLastCandidate();
+        } else if (candidateCount == maxLookahead) {
+            promoteLastCandidate();
+        }
+        candidateLatitudes[candidateCount] = latitude;
+        candidateLongitudes[candidateCount] = longitude;
+        candidateTimes[candidateCount] = timeMillis;
+        candidateCount++;
+    }
+
+    private void promoteLastCandidate() {
+        int last = candidateCount - 1;
+        vertices.add(candidateLatitudes[last], candidateLongitudes[last]);
+        candidateCount = 0;
+    }
+
+    /**
+     * 所有候選點到 anchor→(latitude, longitude) 線段的距離是否都不超過容許誤差
+     */
+    private boolean fitsWithinTolerance(double latitude, double longitude) {
+        int anchor = vertices.size() - 1;
+        double anchorLatitude = vertices.getLatitude(anchor);
+        double anchorLongitude = vertices.getLongitude(anchor);
+        // 以 anchor 為原點的區域平面座標 (公尺)
+        double lonScale = METERS_PER_DEGREE * Math.cos(Math.toRadians(anchorLatitude));
+        double ex = (longitude - anchorLongitude) * lonScale;
+        double ey = (latitude - anchorLatitude) * METERS_PER_DEGREE;
+        double lengthSquared = ex * ex + ey * ey;
+        double toleranceSquared = tolerance * tolerance;
+        for (int i = 0; i < candidateCount; i++) {
+            double px = (candidateLongitudes[i] - anchorLongitude) * lonScale;
+            double py = (candidateLatitudes[i] - anchorLatitude) * METERS_PER_DEGREE;
+            double t = lengthSquared > 0 ? (px * ex + py * ey) / lengthSquared : 0;
+            t = Math.max(0, Math.min(1, t));
+            double dx = px - t * ex;
+            double dy = py - t * ey;
+            if (dx * dx + dy * dy > toleranceSquared) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 已確定的頂點數量 (不含 tail)
+     */
+    public int getVertexCount() {
+        return vertices.size();
+    }
+
+    public double getVertexLatitude(int index) {
+        return vertices.getLatitude(index);
+    }
+
+    public double getVertexLongitude(int index) {
+        return vertices.getLongitude(index);
+    }
+
+    /**
+     * 已確定的頂點 (唯讀使用，不要修改)，畫地圖時可以直接逐點讀取
+     */
+    public PackedTrack getVertices() {
+        return vertices;
+    }
+
+    /**
+     * 最新的點是否還沒成為頂點
+     */
+    public boolean hasTail() {
+        return candidateCount > 0;
+    }
+
+    public double getTailLatitude() {
+        return candidateLatitudes[candidateCount - 1];
+    }
+
+    public double getTailLongitude() {
+        return candidateLongitudes[candidateCount - 1];
+    }
+
+    /**
+     * 最新的點還沒成為頂點時，會讀出它 (序號為 -1)
+     * @return 是否有 tail
+     */
+    public boolean readTail(TrackEngine.FixSink sink) {
+        if (candidateCount == 0) {
+            return false;
+        }
+        int last = candidateCount - 1;
+        sink.onFix(-1, candidateLatitudes[last], candidateLongitudes[last], candidateTimes[last]);
+        return true;
+    }
+}
@@ -65,14 +65,20 @@ public class ThirdActivity extends AppCompatActivity {
         if (intent != null && intent.hasExtra("RUN_TIME") && intent.getLongExtra("RUN_TIME", 0L) > 0) {
             float finalDistance = intent.getFloatExtra("RUN_DISTANCE", 0f);
             long finalTimeMillis = intent.getLongExtra("RUN_TIME", 0L);
+            // 分段與分圈由 RunningService 算好帶過來，這裡只負責顯示與儲存
+            String splitSummary = formatSplits(intent.getLongArrayExtra("RUN_SPLITS"),
+                    intent.getLongArrayExtra("RUN_LAPS"), intent.getDoubleArrayExtra("RUN_LAP_DISTANCES"))
+                    + formatPaceZones(intent.getLongArrayExtra("RUN_PACE_ZONES"))
+                    + formatElevation(intent.getDoubleExtra("RUN_ELEVATION_GAIN", 0),
+                    intent.getDoubleExtra("RUN_ELEVATION_LOSS", 0));
 
             // 格式化本次成績的字串
-            String formattedTime = formatDuration(finalTimeMillis);
+            String formattedTime = RunTextFormatter.formatDuration(finalTimeMillis);
             String latestResultString = String.format(Locale.getDefault(), "最新成績：%.0f 公尺 / %s", finalDistance, formattedTime);
-            tvLatestResult.setText(latestResultString);
+            tvLatestResult.setText(latestResultString + splitSummary);
 
             // 儲存這筆新紀錄
-            saveRecord(finalDistance, finalTimeMillis);
+            saveRecord(finalDistance, finalTimeMillis, splitSummary);
         } else {
             // 如果沒有新紀錄，則不顯示最新成績
             tvLatestResult.setText("沒有新的跑步紀錄");
@@ -128,8 +134,9 @@ public class ThirdActivity extends AppCompatActivity {
      * 將一筆新紀錄儲存到 SharedPreferences
      * @param distance 距離
      * @param timeMillis 時間 (毫秒)
+     * @param splitSummary 分段與分圈的文字 (沒有則為空字串)
      */
-    private void saveRecord(float distance, long timeMillis) {
+    private void saveRecord(float distance, long timeMillis, String splitSummary) {
         SharedPreferences prefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
         SharedPreferences.Editor editor = prefs.edit();
 
@@ -140,7 +147,7 @@ public class ThirdActivity extends AppCompatActivity {
         String currentDate = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date());
         String newRecord = String.format(Locale.getDefault(),
                 "%s\n距離: %.0f 公尺, 時間: %s",
-                currentDate, distance, formatDuration(timeMillis));
+                currentDate, distance, RunTextFormatter.formatDuration(timeMillis)) + splitSummary;
 
         // 加入新紀錄
         historySet.add(newRecord);
@@ -171,14 +178,62 @@ public class ThirdActivity extends AppCompatActivity {
     }
 
     /**
-     * 格式化時間的方法
+     * 把每公里分段與手動分圈整理成文字，每一種佔一行
      */
-    private String formatDuration(long millis) {
-        long hours = TimeUnit.MILLISECONDS.toHours(millis);
-        long minutes = TimeUnit.MILLISECONDS.toMinutes(millis) - TimeUnit.HOURS.toMinutes(hours);
-        long seconds = TimeUnit.MILLISECONDS.toSeconds(millis) - TimeUnit.MINUTES.toSeconds(minutes);
-        long hundredths = (millis / 10) % 100;
+    private String formatSplits(long[] splitMillis, long[] lapMillis, double[] lapMeters) {
+        StringBuilder builder = new StringBuilder();
+        if (splitMillis != null && splitMillis.length > 0) {
+            builder.append("\n每公里:");
+            for (int i = 0; i < splitMillis.length; i++) {
+                builder.append(i == 0 ? " " : ", ").append(formatSplit(splitMillis[i]));
+            }
+        }
+        if (lapMillis != null && lapMeters != null && lapMillis.length > 0) {
+            builder.append("\n分圈:");
+            for (int i = 0; i < lapMillis.length && i < lapMeters.length; i++) {
+                builder.append(i == 0 ? " " : ", ")
+                        .append(Math.round(lapMeters[i])).append("m ")
+                        .append(formatSplit(lapMillis[i]));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 各配速區間的累計時間，沒有停留過的區間不顯示
+     */
+    private String formatPaceZones(long[] zoneMillis) {
+        if (zoneMillis == null) return "";
+        int[] limits = RollingStats.ZONE_LIMITS_SEC_PER_KM;
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < zoneMillis.length; i++) {
+            if (zoneMillis[i] <= 0) continue;
+            builder.append(builder.length() == 0 ? "\n配速區間: " : ", ");
+            if (i == 0) {
+                builder.append("<").append(formatSplit(limits[0] * 1000L));
+            } else if (i >= limits.length) {
+                builder.append(">").append(formatSplit(limits[limits.length - 1] * 1000L));
+            } else {
+                builder.append(formatSplit(limits[i - 1] * 1000L)).append("-").append(formatSplit(limits[i] * 1000L));
+            }
+            builder.append(" ").append(formatSplit(zoneMillis[i]));
+        }
+        return builder.toString();
+    }
 
-        return String.format(Locale.getDefault(), "%02d:%02d:%02d.%02d", hours, minutes, seconds, hundredths);
+    /**
+     * 爬升 / 下降，都小於 1 公尺時不顯示
+     */
+    private String formatElevation(double gain, double loss) {
+        if (gain < 1 && loss < 1) return "";
+        return String.format(Locale.getDefault(), "\n爬升: %.0f 公尺, 下降: %.0f 公尺", gain, loss);
+    }
+
+    /**
+     * 分段時間只顯示 分:秒
+     */
+    private String formatSplit(long millis) {
+        long totalSeconds = TimeUnit.MILLISECONDS.toSeconds(millis);
+        return String.format(Locale.getDefault(), "%d:%02d", totalSeconds / 60, totalSeconds % 60);
     }
 }
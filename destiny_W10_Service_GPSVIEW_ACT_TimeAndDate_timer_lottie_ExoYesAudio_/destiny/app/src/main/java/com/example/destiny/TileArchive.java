@@ -0,0 +1,287 @@
+package com.example.destiny;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 離線地圖圖磚的封存檔
+ *
+ * 檔案格式 (big-endian)：
+ *   header: magic "DTA1", 圖源名稱 (short 長度 + UTF-8), 圖磚數量 (int)
+ *   index : 依 key 排序的 (long key, long offset, int length)，每筆 20 bytes
+ *   data  : 圖磚內容 (PNG 等)，offset 從檔案開頭算起
+ * 開啟時整個檔案以唯讀方式 memory-map，查詢只在 index 上做二分搜尋，不讀進 heap。
+ * 讀取可以在多條執行緒上同時進行 (每次查詢都用 duplicate() 的 buffer)。
+ */
+public final class TileArchive implements Closeable {
+
+    public static final String FILE_EXTENSION = "tilepack";
+    private static final int MAGIC = 0x44544131; // "DTA1"
+    private static final int INDEX_ENTRY_BYTES = 20;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final String sourceName;
+    private final int tileCount;
+    private final int indexStart;
+
+    private TileArchive(RandomAccessFile file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < 10 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a tile archive");
+        }
+        int nameLength = buffer.getShort(4) & 0xFFFF;
+        byte[] name = new byte[nameLength];
+        ByteBuffer view = buffer.duplicate();
+        view.position(6);
+        view.get(name);
+        this.sourceName = new String(name, StandardCharsets.UTF_8);
+        this.tileCount = view.getInt();
+        this.indexStart = view.position();
+        if (tileCount < 0 || (long) indexStart + (long) tileCount * INDEX_ENTRY_BYTES > buffer.capacity()) {
+            throw new IOException("Corrupt tile archive index");
+        }
+    }
+
+    public static TileArchive open(File archiveFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(archiveFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new TileArchive(file, buffer);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * z / x / y 組成一個 key：z 放最高位，同一個 zoom 的圖磚在 index 裡會排在一起
+     */
+    public static long key(int zoom, int x, int y) {
+        return ((long) zoom << 58) | ((long) x << 29) | y;
+    }
+
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    public int getTileCount() {
+        return tileCount;
+    }
+
+    public boolean contains(int zoom, int x, int y) {
+        return find(key(zoom, x, y)) >= 0;
+    }
+
+    /**
+     * 取得圖磚內容 (唯讀的 buffer，和封存檔共用記憶體)，沒有時回傳 null
+     */
+    public ByteBuffer getTile(int zoom, int x, int y) {
+        int entry = find(key(zoom, x, y));
+        if (entry < 0) {
+            return null;
+        }
+        int at = indexStart + entry * INDEX_ENTRY_BYTES;
+        long offset = buffer.getLong(at + 8);
+        int length = buffer.getInt(at + 16);
+        if (offset < 0 || offset + length > buffer.capacity()) {
+            return null;
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) offset);
+        view.limit((int) offset + length);
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    public InputStream openTile(int zoom, int x, int y) {
+        ByteBuffer tile = getTile(zoom, x, y);
+        return tile == null ? null : new ByteBufferInputStream(tile);
+    }
+
+    private int find(long key) {
+        int low = 0;
+        int high = tileCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = buffer.getLong(indexStart + mid * INDEX_ENTRY_BYTES);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * 寫入封存檔：圖磚內容先依序寫到暫存檔，finish() 時才排序 index 並組成最終檔案，
+     * 最後用 rename 換上去，寫到一半失敗也不會留下壞掉的封存檔。
+     */
+    public static final class Writer implements Closeable {
+
+        private final File target;
+        private final File dataFile;
+        private final String sourceName;
+        private final OutputStream data;
+        private long dataLength = 0;
+
+        private long[] keys = new long[256];
+        private long[] offsets = new long[256];
+        private int[] lengths = new int[256];
+        private int count = 0;
+        private boolean finished = false;
+
+        public Writer(File target, String sourceName) throws IOException {
+            this.target = target;
+            this.sourceName = sourceName;
+            this.dataFile = new File(target.getPath() + ".data");
+            this.data = new BufferedOutputStream(new FileOutputStream(dataFile));
+        }
+
+        public int getTileCount() {
+            return count;
+        }
+
+        public long getDataBytes() {
+            return dataLength;
+        }
+
+        public void add(int zoom, int x, int y, byte[] tile, int length) throws IOException {
+            if (finished) {
+                throw new IllegalStateException("Writer already finished");
+            }
+            if (count == keys.length) {
+                int size = count * 2;
+                keys = Arrays.copyOf(keys, size);
+                offsets = Arrays.copyOf(offsets, size);
+                lengths = Arrays.copyOf(lengths, size);
+            }
+            keys[count] = key(zoom, x, y);
+            offsets[count] = dataLength;
+            lengths[count] = length;
+            count++;
+            data.write(tile, 0, length);
+            dataLength += length;
+        }
+
+        /**
+         * 組成最終的封存檔 (重複的圖磚只保留最後一次加入的)
+         */
+        public void finish() throws IOException {
+            if (finished) return;
+            finished = true;
+            data.close();
+
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            // 相同 key 依加入順序排列，後面的覆蓋前面的
+            Arrays.sort(order, (a, b) -> keys[a] != keys[b] ? Long.compare(keys[a], keys[b]) : Integer.compare(a, b));
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (i + 1 < count && keys[order[i]] == keys[order[i + 1]]) {
+                    continue;
+                }
+                order[unique++] = order[i];
+            }
+
+            byte[] name = sourceName.getBytes(StandardCharsets.UTF_8);
+            long headerBytes = 4 + 2 + name.length + 4;
+            long dataStart = headerBytes + (long) unique * INDEX_ENTRY_BYTES;
+            File temp = new File(target.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeInt(unique);
+                for (int i = 0; i < unique; i++) {
+                    int entry = order[i];
+                    out.writeLong(keys[entry]);
+                    out.writeLong(dataStart + offsets[entry]);
+                    out.writeInt(lengths[entry]);
+                }
+                // 重複的圖磚內容也一起複製，index 只指向保留的那一份
+                try (InputStream in = new FileInputStream(dataFile)) {
+                    byte[] chunk = new byte[64 * 1024];
+                    int read;
+                    while ((read = in.read(chunk)) != -1) {
+                        out.write(chunk, 0, read);
+                    }
+                }
+            }
+            if (!dataFile.delete()) {
+                dataFile.deleteOnExit();
+            }
+            if (!temp.renameTo(target)) {
+                if (!target.delete() || !temp.renameTo(target)) {
+                    throw new IOException("Cannot replace " + target);
+                }
+            }
+        }
+
+        /**
+         * 沒有呼叫 finish() 就關閉時，捨棄所有內容
+         */
+        @Override
+        public void close() throws IOException {
+            if (finished) return;
+            finished = true;
+            data.close();
+            if (!dataFile.delete()) {
+                dataFile.deleteOnExit();
+            }
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer source;
+
+        ByteBufferInputStream(ByteBuffer source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read() {
+            return source.hasRemaining() ? source.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!source.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, source.remaining());
+            source.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return source.remaining();
+        }
+    }
+}
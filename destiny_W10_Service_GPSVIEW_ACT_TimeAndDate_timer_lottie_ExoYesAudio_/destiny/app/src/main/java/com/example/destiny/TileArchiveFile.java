@@ -0,0 +1,72 @@
+package com.example.destiny;
+
+import android.util.Log;
+
+import org.osmdroid.tileprovider.modules.ArchiveFileFactory;
+import org.osmdroid.tileprovider.modules.IArchiveFile;
+import org.osmdroid.tileprovider.tilesource.ITileSource;
+import org.osmdroid.util.MapTileIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * 讓 osmdroid 讀取 TileArchive 的轉接層
+ *
+ * 註冊副檔名之後，MapTileProviderBasic 會在 osmdroid 的資料夾裡找到 .tilepack 檔，
+ * 先從封存檔拿圖磚，找不到才交給網路下載。
+ */
+public class TileArchiveFile implements IArchiveFile {
+
+    private static final String TAG = "TileArchiveFile";
+
+    private TileArchive archive;
+    private boolean ignoreTileSource = false;
+
+    /**
+     * 必須在建立 tile provider 之前呼叫
+     */
+    public static void register() {
+        ArchiveFileFactory.registerArchiveFileProvider(TileArchiveFile.class, TileArchive.FILE_EXTENSION);
+    }
+
+    @Override
+    public void init(File pFile) throws Exception {
+        archive = TileArchive.open(pFile);
+        Log.d(TAG, "Opened " + pFile.getName() + ": " + archive.getTileCount() + " tiles");
+    }
+
+    @Override
+    public InputStream getInputStream(ITileSource tileSource, long pMapTileIndex) {
+        if (archive == null) return null;
+        if (!ignoreTileSource && !archive.getSourceName().equals(tileSource.name())) {
+            return null;
+        }
+        return archive.openTile(MapTileIndex.getZoom(pMapTileIndex),
+                MapTileIndex.getX(pMapTileIndex), MapTileIndex.getY(pMapTileIndex));
+    }
+
+    @Override
+    public void close() {
+        if (archive == null) return;
+        try {
+            archive.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to close tile archive", e);
+        }
+        archive = null;
+    }
+
+    @Override
+    public Set<String> getTileSources() {
+        return archive == null ? Collections.emptySet() : Collections.singleton(archive.getSourceName());
+    }
+
+    @Override
+    public void setIgnoreTileSource(boolean pIgnoreTileSource) {
+        ignoreTileSource = pIgnoreTileSource;
+    }
+}
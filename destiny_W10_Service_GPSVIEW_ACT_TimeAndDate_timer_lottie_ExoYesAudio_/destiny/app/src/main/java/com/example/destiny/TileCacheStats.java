@@ -0,0 +1,76 @@
+package com.example.destiny;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 地圖圖磚記憶體快取的計數器 (可以在任何執行緒上更新)
+ */
+public final class TileCacheStats {
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    // 解碼時重複使用了 pool 裡的 bitmap / 只能配置新的 bitmap
+    private final AtomicLong pooledDecodes = new AtomicLong();
+    private final AtomicLong allocatedDecodes = new AtomicLong();
+
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    public void recordEviction() {
+        evictions.incrementAndGet();
+    }
+
+    public void recordDecode(boolean reusedPooledBitmap) {
+        (reusedPooledBitmap ? pooledDecodes : allocatedDecodes).incrementAndGet();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getPooledDecodes() {
+        return pooledDecodes.get();
+    }
+
+    public long getAllocatedDecodes() {
+        return allocatedDecodes.get();
+    }
+
+    /**
+     * 命中率 (0~1)，還沒有任何查詢時為 NaN
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? Double.NaN : (double) h / total;
+    }
+
+    public void reset() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+        pooledDecodes.set(0);
+        allocatedDecodes.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "TileCacheStats{hits=" + hits.get() + ", misses=" + misses.get()
+                + ", evictions=" + evictions.get() + ", pooledDecodes=" + pooledDecodes.get()
+                + ", allocatedDecodes=" + allocatedDecodes.get() + "}";
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.destiny;
+
+/**
+ * 地圖圖磚在記憶體中的預算
+ *
+ * 依裝置的 memory class (每個 App 可用的 heap，MB) 決定：
+ * - 記憶體快取可以放幾張圖磚 (至少要能放滿一個畫面，否則地圖會一直重新解碼)
+ * - 圖磚用什麼格式解碼：低記憶體裝置用 RGB_565 (每像素 2 bytes，圖磚本來就沒有透明度)
+ * 同一個畫面上還有 Lottie 動畫和 ExoPlayer，所以地圖只拿 heap 的一小部分。
+ */
+public final class TileMemoryPolicy {
+
+    public enum DecodeMode {
+        ARGB_8888(4),
+        RGB_565(2),
+        // Android 8.0 以上的 hardware bitmap，像素放在 GPU 記憶體，不佔 Java heap
+        HARDWARE(0);
+
+        public final int heapBytesPerPixel;
+
+        DecodeMode(int heapBytesPerPixel) {
+            this.heapBytesPerPixel = heapBytesPerPixel;
+        }
+    }
+
+    public static final int TILE_SIZE_PIXELS = 256;
+    // 低記憶體裝置只給 heap 的 1/10，一般裝置 1/6
+    private static final int LOW_RAM_HEAP_FRACTION = 10;
+    private static final int DEFAULT_HEAP_FRACTION = 6;
+    // memory class 不超過這個值 (MB) 也視為記憶體吃緊
+    private static final int SMALL_HEAP_MB = 128;
+    // 快取張數的上限 (再多也只是留著螢幕外很遠的圖磚)
+    private static final int MAX_TILE_COUNT = 256;
+
+    public final DecodeMode decodeMode;
+    public final int tileCount;
+    // 快取滿了之後，超過多少張才開始清除 (避免每次平移都清一次)
+    public final int overshoot;
+
+    private TileMemoryPolicy(DecodeMode decodeMode, int tileCount, int overshoot) {
+        this.decodeMode = decodeMode;
+        this.tileCount = tileCount;
+        this.overshoot = overshoot;
+    }
+
+    /**
+     * @param memoryClassMb        ActivityManager.getMemoryClass()
+     * @param lowRamDevice         ActivityManager.isLowRamDevice()
+     * @param allowHardwareBitmaps 是否允許 hardware bitmap (還需要 Android 8.0 以上)
+     */
+    public static TileMemoryPolicy forDevice(int memoryClassMb, boolean lowRamDevice, int screenWidth,
+                                             int screenHeight, boolean allowHardwareBitmaps, int sdkInt) {
+        boolean constrained = lowRamDevice || memoryClassMb <= SMALL_HEAP_MB;
+        DecodeMode mode;
+        if (allowHardwareBitmaps && sdkInt >= 26) {
+            mode = DecodeMode.HARDWARE;
+        } else {
+            mode = constrained ? DecodeMode.RGB_565 : DecodeMode.ARGB_8888;
+        }
+
+        // 一個畫面需要的張數：每個方向各多一張，平移時邊緣不會空白
+        int columns = (screenWidth + TILE_SIZE_PIXELS - 1) / TILE_SIZE_PIXELS + 1;
+        int rows = (screenHeight + TILE_SIZE_PIXELS - 1) / TILE_SIZE_PIXELS + 1;
+        int screenTiles = columns * rows;
+
+        int count;
+        if (mode == DecodeMode.HARDWARE) {
+            // 不佔 heap，但 GPU 記憶體也有限，留三個畫面的量
+            count = screenTiles * 3;
+        } else {
+            long budgetBytes = (long) memoryClassMb * 1024 * 1024
+                    / (lowRamDevice ? LOW_RAM_HEAP_FRACTION : DEFAULT_HEAP_FRACTION);
+            long tileBytes = (long) TILE_SIZE_PIXELS * TILE_SIZE_PIXELS * mode.heapBytesPerPixel;
+            count = (int) Math.min(Integer.MAX_VALUE, budgetBytes / tileBytes);
+        }
+        count = Math.max(screenTiles, Math.min(MAX_TILE_COUNT, count));
+        int overshoot = Math.max(2, count / 8);
+        return new TileMemoryPolicy(mode, count, overshoot);
+    }
+
+    /**
+     * 快取滿載時大約佔用的 heap (bytes)
+     */
+    public long estimatedHeapBytes() {
+        return (long) (tileCount + overshoot) * TILE_SIZE_PIXELS * TILE_SIZE_PIXELS * decodeMode.heapBytesPerPixel;
+    }
+
+    @Override
+    public String toString() {
+        return "TileMemoryPolicy{" + decodeMode + ", tiles=" + tileCount + ", overshoot=" + overshoot + "}";
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.destiny;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+
+/**
+ * 把一塊範圍、一段 zoom 的地圖圖磚預先下載成 TileArchive
+ *
+ * - 圖磚數量超過上限時直接拒絕 (只下載一部分的高 zoom 沒有意義)
+ * - 下載時累計大小，超過容量上限就停止，已下載的部分 (由低 zoom 到高 zoom) 仍會寫成封存檔
+ * - 單一圖磚下載失敗只會略過，地圖在離線缺圖時會再走網路
+ * 會阻塞呼叫的執行緒，必須在背景執行緒上使用；執行緒被 interrupt 時會放棄並丟出 InterruptedException。
+ */
+public final class TilePrecacher {
+
+    public static final int DEFAULT_MAX_TILES = 2000;
+    public static final long DEFAULT_MAX_BYTES = 50L * 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int READ_TIMEOUT_MS = 15_000;
+    // Web Mercator 可以表示的緯度範圍
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    public interface Progress {
+        void onProgress(int done, int total);
+    }
+
+    public static final class Result {
+        public final int tilesWritten;
+        public final long bytesWritten;
+        public final int tilesFailed;
+        public final boolean byteBudgetReached;
+
+        Result(int tilesWritten, long bytesWritten, int tilesFailed, boolean byteBudgetReached) {
+            this.tilesWritten = tilesWritten;
+            this.bytesWritten = bytesWritten;
+            this.tilesFailed = tilesFailed;
+            this.byteBudgetReached = byteBudgetReached;
+        }
+    }
+
+    private final String urlTemplate;
+    private final String userAgent;
+    private final int maxTiles;
+    private final long maxBytes;
+    private byte[] tileBuffer = new byte[32 * 1024];
+
+    /**
+     * @param urlTemplate 圖磚網址，{z} {x} {y} 會被替換，例如 "https://tiles.example.com/{z}/{x}/{y}.png"
+     *                    (請使用允許大量下載的圖磚伺服器，openstreetmap.org 的公用伺服器不允許)
+     */
+    public TilePrecacher(String urlTemplate, String userAgent, int maxTiles, long maxBytes) {
+        if (maxTiles <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("budgets must be positive: " + maxTiles + ", " + maxBytes);
+        }
+        this.urlTemplate = urlTemplate;
+        this.userAgent = userAgent;
+        this.maxTiles = maxTiles;
+        this.maxBytes = maxBytes;
+    }
+
+    public static int tileX(double longitude, int zoom) {
+        int n = 1 << zoom;
+        return Math.max(0, Math.min(n - 1, (int) Math.floor(tileXExact(longitude, zoom))));
+    }
+
+    public static int tileY(double latitude, int zoom) {
+        int n = 1 << zoom;
+        return Math.max(0, Math.min(n - 1, (int) Math.floor(tileYExact(latitude, zoom))));
+    }
+
+    /**
+     * 經度對應的圖磚 x 座標 (含小數，小數部分就是在圖磚內的位置)
+     */
+    public static double tileXExact(double longitude, int zoom) {
+        return (longitude + 180.0) / 360.0 * (1 << zoom);
+    }
+
+    public static double tileYExact(double latitude, int zoom) {
+        double lat = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude)));
+        return (1 - Math.log(Math.tan(lat) + 1 / Math.cos(lat)) / Math.PI) / 2 * (1 << zoom);
+    }
+
+    /**
+     * 範圍內 minZoom..maxZoom 所有圖磚的數量
+     */
+    public static long countTiles(double north, double south, double east, double west, int minZoom, int maxZoom) {
+        checkArea(north, south, east, west, minZoom, maxZoom);
+        long total = 0;
+        for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+            long columns = tileX(east, zoom) - tileX(west, zoom) + 1;
+            long rows = tileY(south, zoom) - tileY(north, zoom) + 1;
+            total += columns * rows;
+        }
+        return total;
+    }
+
+    private static void checkArea(double north, double south, double east, double west, int minZoom, int maxZoom) {
+        if (north < south || east < west) {
+            throw new IllegalArgumentException("Invalid area: N" + north + " S" + south + " E" + east + " W" + west);
+        }
+        if (minZoom < 0 || maxZoom > 22 || minZoom > maxZoom) {
+            throw new IllegalArgumentException("Invalid zoom range: " + minZoom + ".." + maxZoom);
+        }
+    }
+
+    /**
+     * 下載範圍內的圖磚並寫成 target 封存檔
+     * @throws IllegalArgumentException 範圍不合法，或圖磚數量超過上限
+     */
+    public Result precache(double north, double south, double east, double west, int minZoom, int maxZoom,
+                           File target, String sourceName, Progress progress)
+            throws IOException, InterruptedException {
+        long total = countTiles(north, south, east, west, minZoom, maxZoom);
+        if (total > maxTiles) {
+            throw new IllegalArgumentException("Area needs " + total + " tiles, budget is " + maxTiles);
+        }
+
+        int done = 0;
+        int failed = 0;
+        boolean byteBudgetReached = false;
+        try (TileArchive.Writer writer = new TileArchive.Writer(target, sourceName)) {
+            download:
+            for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+                int minX = tileX(west, zoom), maxX = tileX(east, zoom);
+                int minY = tileY(north, zoom), maxY = tileY(south, zoom);
+                for (int x = minX; x <= maxX; x++) {
+                    for (int y = minY; y <= maxY; y++) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new InterruptedException("Tile pre-cache cancelled");
+                        }
+                        int length = download(zoom, x, y);
+                        if (length < 0) {
+                            failed++;
+                        } else if (writer.getDataBytes() + length > maxBytes) {
+                            byteBudgetReached = true;
+                            break download;
+                        } else {
+                            writer.add(zoom, x, y, tileBuffer, length);
+                        }
+                        done++;
+                        if (progress != null) {
+                            progress.onProgress(done, (int) total);
+                        }
+                    }
+                }
+            }
+            writer.finish();
+            return new Result(writer.getTileCount(), writer.getDataBytes(), failed, byteBudgetReached);
+        }
+    }
+
+    /**
+     * 下載一張圖磚到 tileBuffer
+     * @return 圖磚大小，失敗時為 -1
+     */
+    private int download(int zoom, int x, int y) {
+        String url = urlTemplate.replace("{z}", Integer.toString(zoom))
+                .replace("{x}", Integer.toString(x))
+                .replace("{y}", Integer.toString(y));
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            if (userAgent != null) {
+                connection.setRequestProperty("User-Agent", userAgent);
+            }
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                return -1;
+            }
+            try (InputStream in = connection.getInputStream()) {
+                int length = 0;
+                int read;
+                while ((read = in.read(tileBuffer, length, tileBuffer.length - length)) != -1) {
+                    length += read;
+                    if (length == tileBuffer.length) {
+                        tileBuffer = Arrays.copyOf(tileBuffer, tileBuffer.length * 2);
+                    }
+                }
+                return length;
+            }
+        } catch (IOException e) {
+            return -1;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+}
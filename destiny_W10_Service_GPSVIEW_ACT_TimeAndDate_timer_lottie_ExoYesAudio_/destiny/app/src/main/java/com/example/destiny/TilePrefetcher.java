@@ -0,0 +1,285 @@
+package com.example.destiny;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 依跑者的方向與速度，預先下載接下來幾分鐘會看到的地圖圖磚
+ *
+ * 每個定位點用前後兩點估算速度 (指數平滑)，推算 30 秒、60 秒… 後的位置，
+ * 把那時候畫面會涵蓋的圖磚排進佇列，由低優先權的背景執行緒慢慢下載到地圖的快取。
+ * - 同時下載的數量有上限，頻寬用 token bucket 限制
+ * - 定位點來得太慢 (推算不可靠) 或幾乎沒有移動時，不預先下載
+ * - 每個新的定位點都會換掉還沒開始的佇列，只下載最新推算出來的圖磚
+ * onPosition() / setViewport() / setEnabled() 必須在同一條執行緒 (主執行緒) 上呼叫。
+ */
+public final class TilePrefetcher {
+
+    /**
+     * 實際下載圖磚並寫進快取 (在背景執行緒上呼叫)
+     */
+    public interface TileFetcher {
+        /**
+         * @return 下載的 bytes (已經在快取裡時為 0)，失敗時為 -1
+         */
+        long fetch(int zoom, int x, int y) throws InterruptedException;
+
+        /**
+         * 釋放下載器的資源 (例如快取的資料庫連線)
+         */
+        default void close() {
+        }
+    }
+
+    public static final int DEFAULT_MAX_CONCURRENT = 2;
+    public static final long DEFAULT_BYTES_PER_SECOND = 64 * 1024;
+    public static final long DEFAULT_LOOKAHEAD_MS = 120_000;
+    private static final long PREDICTION_STEP_MS = 30_000;
+    // 定位點間隔超過這個值就不推算 (也不下載)
+    private static final long SLOW_FIX_INTERVAL_MS = 10_000;
+    // 低於這個速度 (公尺/秒) 視為站著不動
+    private static final double MIN_SPEED_MPS = 0.5;
+    private static final double VELOCITY_SMOOTHING = 0.3;
+    private static final int MAX_PLANNED_TILES = 64;
+    private static final int RECENT_TILES = 1024;
+    private static final int TILE_SIZE_PIXELS = 256;
+    private static final double METERS_PER_DEGREE = Math.toRadians(1) * GeoDistance.EARTH_RADIUS_METERS;
+
+    private final TileFetcher fetcher;
+    private final int maxConcurrent;
+    private final long bytesPerSecond;
+    private final long lookaheadMs;
+    private final ExecutorService workers;
+
+    // 以下只在呼叫端的執行緒上使用
+    private boolean hasPosition = false;
+    private long lastTime;
+    private double lastLatitude;
+    private double lastLongitude;
+    private boolean hasVelocity = false;
+    private double velocityNorth;
+    private double velocityEast;
+    private int zoom = 16;
+    private int viewportWidth = 1080;
+    private int viewportHeight = 1920;
+    private final Set<Long> plan = new LinkedHashSet<>();
+
+    // 以下由 lock 保護 (背景執行緒也會使用)
+    private final Object lock = new Object();
+    private final ArrayDeque<Long> pending = new ArrayDeque<>();
+    // 最近已下載或正在下載的圖磚，避免重複下載
+    private final Map<Long, Boolean> recent = new LinkedHashMap<Long, Boolean>(RECENT_TILES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > RECENT_TILES;
+        }
+    };
+    private int active = 0;
+    private boolean enabled = true;
+    private boolean stopped = false;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    public TilePrefetcher(TileFetcher fetcher) {
+        this(fetcher, DEFAULT_MAX_CONCURRENT, DEFAULT_BYTES_PER_SECOND, DEFAULT_LOOKAHEAD_MS);
+    }
+
+    public TilePrefetcher(TileFetcher fetcher, int maxConcurrent, long bytesPerSecond, long lookaheadMs) {
+        if (maxConcurrent <= 0 || bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("limits must be positive: " + maxConcurrent + ", " + bytesPerSecond);
+        }
+        this.fetcher = fetcher;
+        this.maxConcurrent = maxConcurrent;
+        this.bytesPerSecond = bytesPerSecond;
+        this.lookaheadMs = lookaheadMs;
+        // 最多累積一秒的頻寬
+        this.tokens = bytesPerSecond;
+        this.workers = Executors.newFixedThreadPool(maxConcurrent, runnable -> {
+            Thread thread = new Thread(runnable, "TilePrefetch");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * 地圖目前的 zoom 與畫面大小 (像素)，決定每個推算位置要涵蓋多少圖磚
+     */
+    public void setViewport(int zoom, int widthPixels, int heightPixels) {
+        this.zoom = Math.max(0, Math.min(22, zoom));
+        this.viewportWidth = Math.max(1, widthPixels);
+        this.viewportHeight = Math.max(1, heightPixels);
+    }
+
+    /**
+     * 畫面不在前景時停用，清掉還沒開始的下載
+     */
+    public void setEnabled(boolean enabled) {
+        synchronized (lock) {
+            this.enabled = enabled;
+            if (enabled) {
+                pump();
+            } else {
+                pending.clear();
+            }
+        }
+    }
+
+    /**
+     * 新的定位點 (時間使用單調時鐘)
+     */
+    public void onPosition(long timeMillis, double latitude, double longitude) {
+        if (hasPosition) {
+            long dt = timeMillis - lastTime;
+            if (dt <= 0) return;
+            if (dt > SLOW_FIX_INTERVAL_MS) {
+                // 定位點太稀疏，速度已經不可信：重新開始估算
+                hasVelocity = false;
+            } else {
+                double seconds = dt / 1000.0;
+                double north = (latitude - lastLatitude) * METERS_PER_DEGREE / seconds;
+                double east = (longitude - lastLongitude) * METERS_PER_DEGREE
+                        * Math.cos(Math.toRadians(latitude)) / seconds;
+                if (hasVelocity) {
+                    velocityNorth += VELOCITY_SMOOTHING * (north - velocityNorth);
+                    velocityEast += VELOCITY_SMOOTHING * (east - velocityEast);
+                } else {
+                    velocityNorth = north;
+                    velocityEast = east;
+                    hasVelocity = true;
+                }
+            }
+        }
+        hasPosition = true;
+        lastTime = timeMillis;
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+
+        plan.clear();
+        if (hasVelocity && Math.hypot(velocityNorth, velocityEast) >= MIN_SPEED_MPS) {
+            planAhead(latitude, longitude);
+        }
+        synchronized (lock) {
+            pending.clear();
+            pending.addAll(plan);
+            pump();
+        }
+    }
+
+    /**
+     * 由近到遠推算未來的位置，把每個位置畫面涵蓋的圖磚加進 plan
+     */
+    private void planAhead(double latitude, double longitude) {
+        int n = 1 << zoom;
+        double halfWidth = viewportWidth / 2.0 / TILE_SIZE_PIXELS;
+        double halfHeight = viewportHeight / 2.0 / TILE_SIZE_PIXELS;
+        double lonScale = METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+        for (long ahead = PREDICTION_STEP_MS; ahead <= lookaheadMs; ahead += PREDICTION_STEP_MS) {
+            double seconds = ahead / 1000.0;
+            double predictedLatitude = latitude + velocityNorth * seconds / METERS_PER_DEGREE;
+            double predictedLongitude = longitude + velocityEast * seconds / lonScale;
+            double centerX = TilePrecacher.tileXExact(predictedLongitude, zoom);
+            double centerY = TilePrecacher.tileYExact(predictedLatitude, zoom);
+            int minX = Math.max(0, (int) Math.floor(centerX - halfWidth));
+            int maxX = Math.min(n - 1, (int) Math.floor(centerX + halfWidth));
+            int minY = Math.max(0, (int) Math.floor(centerY - halfHeight));
+            int maxY = Math.min(n - 1, (int) Math.floor(centerY + halfHeight));
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    if (plan.size() >= MAX_PLANNED_TILES) return;
+                    plan.add(TileArchive.key(zoom, x, y));
+                }
+            }
+        }
+    }
+
+    /**
+     * 在並行上限內開始下載佇列中的圖磚 (必須持有 lock)
+     */
+    private void pump() {
+        while (enabled && !stopped && active < maxConcurrent && !pending.isEmpty()) {
+            Long key = pending.poll();
+            if (recent.containsKey(key)) {
+                continue;
+            }
+            recent.put(key, Boolean.TRUE);
+            active++;
+            workers.execute(() -> fetch(key));
+        }
+    }
+
+    private void fetch(long key) {
+        int tileZoom = (int) (key >>> 58);
+        int x = (int) ((key >>> 29) & 0x1FFFFFFF);
+        int y = (int) (key & 0x1FFFFFFF);
+        long bytes = -1;
+        try {
+            acquireBandwidth();
+            bytes = fetcher.fetch(tileZoom, x, y);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (lock) {
+                if (bytes > 0) {
+                    tokens -= bytes;
+                } else if (bytes < 0) {
+                    // 失敗的圖磚之後還可以再試
+                    recent.remove(key);
+                }
+                active--;
+                pump();
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 頻寬用完時 (token 為負) 等到補回來才開始下一張
+     */
+    private void acquireBandwidth() throws InterruptedException {
+        while (true) {
+            long waitMillis;
+            synchronized (lock) {
+                long now = System.nanoTime();
+                tokens = Math.min(bytesPerSecond, tokens + (now - lastRefillNanos) * bytesPerSecond / 1e9);
+                lastRefillNanos = now;
+                if (tokens >= 0) return;
+                waitMillis = (long) Math.ceil(-tokens * 1000 / bytesPerSecond);
+            }
+            Thread.sleep(Math.max(1, waitMillis));
+        }
+    }
+
+    /**
+     * 等到佇列清空、所有下載都結束 (測試用)
+     * @return 是否在時間內結束
+     */
+    boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (lock) {
+            while (active > 0 || (enabled && !stopped && !pending.isEmpty())) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) return false;
+                lock.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 停止所有下載 (進行中的會被 interrupt)
+     */
+    public void stop() {
+        synchronized (lock) {
+            stopped = true;
+            pending.clear();
+        }
+        workers.shutdownNow();
+        fetcher.close();
+    }
+}
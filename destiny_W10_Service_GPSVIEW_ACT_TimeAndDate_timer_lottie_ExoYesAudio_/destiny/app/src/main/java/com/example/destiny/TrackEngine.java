@@ -0,0 +1,227 @@
+package com.example.destiny;
+
+/**
+ * 跑步軌跡計算引擎
+ *
+ * 定位點存放在固定大小的基本型別環狀緩衝區 (緯度 / 經度 / 時間 / 精度)，
+ * addFix() 不會配置任何物件，長時間跑步也不會每個定位點都產生垃圾。
+ */
+public final class TrackEngine {
+
+    /**
+     * 逐點讀取定位點用的回呼 (不需要為每個點建立物件)
+     */
+    public interface FixSink {
+        void onFix(long seq, double latitude, double longitude, long timeMillis);
+    }
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final double DEFAULT_NOISE_THRESHOLD_METERS = 2.0;
+
+    // 環狀緩衝區 (容量一定是 2 的次方，用 mask 取代 % 運算)
+    private final int mask;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final long[] times;
+    private final float[] accuracies;
+
+    private final double noiseThresholdMeters;
+
+    // 已接受的定位點總數，同時也是最新一點的序號
+    private long fixCount = 0;
+    private double totalDistance = 0;
+
+    // 目前位置 (每個定位點都會更新，不論是否被當成雜訊)
+    private boolean hasCurrent = false;
+    private double currentLatitude;
+    private double currentLongitude;
+    private long currentTime;
+
+    // 計時相關 (時間應使用單調時鐘，例如 SystemClock.elapsedRealtime)
+    private long startTime = 0;
+    private long timeOffset = 0;
+    private boolean paused = false;
+
+    public TrackEngine() {
+        this(DEFAULT_CAPACITY, DEFAULT_NOISE_THRESHOLD_METERS);
+    }
+
+    public TrackEngine(int capacity, double noiseThresholdMeters) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.latitudes = new double[size];
+        this.longitudes = new double[size];
+        this.times = new long[size];
+        this.accuracies = new float[size];
+        this.noiseThresholdMeters = noiseThresholdMeters;
+    }
+
+    /**
+     * 開始一次跑步
+     * @param nowMillis 目前時間 (單調時鐘)
+     * @param distanceOffset 之前已跑的距離 (全新開始為 0)
+     * @param timeOffsetMillis 之前已跑的時間 (全新開始為 0)
+     */
+    public void start(long nowMillis, double distanceOffset, long timeOffsetMillis) {
+        fixCount = 0;
+        hasCurrent = false;
+        totalDistance = distanceOffset;
+        startTime = nowMillis;
+        timeOffset = timeOffsetMillis;
+        paused = false;
+    }
+
+    /**
+     * 暫停：凍結計時，之後的定位點只更新目前位置，不累計距離
+     */
+    public void pause(long nowMillis) {
+        if (paused) return;
+        timeOffset = getElapsedMillis(nowMillis);
+        paused = true;
+    }
+
+    /**
+     * 繼續：重新開始計時，下一個定位點會從暫停的位置接著算距離
+     */
+    public void resume(long nowMillis) {
+        if (!paused) return;
+        startTime = nowMillis;
+        paused = false;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * 加入一個新的定位點
+     * @param timeMillis 定位點的時間，與 start() 使用同一個單調時鐘 (getElapsedMillis(timeMillis) 即為該點的跑步經過時間)
+     * @return 如果這個點讓總距離增加了 (超過雜訊門檻) 則回傳 true
+     */
+    public boolean addFix(double latitude, double longitude, long timeMillis, float accuracy) {
+        currentLatitude = latitude;
+        currentLongitude = longitude;
+        currentTime = timeMillis;
+        hasCurrent = true;
+
+        if (paused) {
+            return false;
+        }
+        if (fixCount == 0) {
+            // 第一個點，特別是在「繼續」時，只當作起點
+            append(latitude, longitude, timeMillis, accuracy);
+            return false;
+        }
+
+        int last = (int) ((fixCount - 1) & mask);
+        double distance = GeoDistance.distance(latitudes[last], longitudes[last], latitude, longitude);
+        if (distance > noiseThresholdMeters) {
+            totalDistance += distance;
+            append(latitude, longitude, timeMillis, accuracy);
+            return true;
+        }
+        return false;
+    }
+
+    private void append(double latitude, double longitude, long timeMillis, float accuracy) {
+        int index = (int) (fixCount & mask);
+        latitudes[index] = latitude;
+        longitudes[index] = longitude;
+        times[index] = timeMillis;
+        accuracies[index] = accuracy;
+        fixCount++;
+    }
+
+    public double getTotalDistance() {
+        return totalDistance;
+    }
+
+    public long getElapsedMillis(long nowMillis) {
+        if (paused) {
+            return timeOffset;
+        }
+        return (nowMillis - startTime) + timeOffset;
+    }
+
+    /**
+     * 已接受的定位點總數 (最新一點的序號)，可能大於緩衝區容量
+     */
+    public long getFixCount() {
+        return fixCount;
+    }
+
+    /**
+     * 緩衝區中目前還保留的定位點數量
+     */
+    public int getRetainedFixCount() {
+        return (int) Math.min(fixCount, mask + 1);
+    }
+
+    public boolean hasCurrentFix() {
+        return hasCurrent;
+    }
+
+    public double getCurrentLatitude() {
+        return currentLatitude;
+    }
+
+    public double getCurrentLongitude() {
+        return currentLongitude;
+    }
+
+    public long getCurrentTime() {
+        return currentTime;
+    }
+
+    /**
+     * 取得序號為 seq 的定位點 (序號從 0 開始)，只有還留在緩衝區內的點才能讀取
+     */
+    public double getLatitude(long seq) {
+        return latitudes[indexOf(seq)];
+    }
+
+    public double getLongitude(long seq) {
+        return longitudes[indexOf(seq)];
+    }
+
+    public long getTime(long seq) {
+        return times[indexOf(seq)];
+    }
+
+    public float getAccuracy(long seq) {
+        return accuracies[indexOf(seq)];
+    }
+
+    private int indexOf(long seq) {
+        if (seq < 0 || seq >= fixCount || seq < fixCount - (mask + 1)) {
+            throw new IndexOutOfBoundsException("fix " + seq + " is not retained (count=" + fixCount + ")");
+        }
+        return (int) (seq & mask);
+    }
+
+    /**
+     * 建立目前狀態的不可變快照 (只有這裡會配置物件，不在每個定位點的路徑上)
+     */
+    public RunSnapshot snapshot(long nowMillis, String locationName) {
+        return snapshot(nowMillis, locationName, null, null);
+    }
+
+    /**
+     * 同 snapshot(nowMillis, locationName)，另外帶上配速與爬升的統計 (可以是 null)
+     */
+    public RunSnapshot snapshot(long nowMillis, String locationName, RollingStats stats, ElevationTracker elevation) {
+        long elapsed = getElapsedMillis(nowMillis);
+        double pace = stats != null ? stats.getCurrentPace(elapsed) : Double.NaN;
+        long bestKm = stats != null ? stats.getBestKmMillis() : -1;
+        double gain = elevation != null ? elevation.getGain() : 0;
+        double loss = elevation != null ? elevation.getLoss() : 0;
+        return new RunSnapshot(totalDistance, elapsed, paused, paused ? -1 : startTime, timeOffset, fixCount,
+                hasCurrent, currentLatitude, currentLongitude, locationName, pace, bestKm, gain, loss);
+    }
+}
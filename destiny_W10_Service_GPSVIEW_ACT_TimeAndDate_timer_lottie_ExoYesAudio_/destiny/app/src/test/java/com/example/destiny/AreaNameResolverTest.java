@@ -0,0 +1,180 @@
+package com.example.destiny;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * AreaNameResolver 與 Geohash 的本機單元測試
+ */
+public class AreaNameResolverTest {
+
+    // 手動執行排隊中的工作，測試才能控制查詢何時完成
+    private static final class ManualExecutor implements Executor {
+        final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private static final class CountingLookup implements AreaNameResolver.Lookup {
+        int calls;
+        String name = "臺北市 中正區";
+        boolean fail;
+
+        @Override
+        public String lookup(double latitude, double longitude) throws IOException {
+            calls++;
+            if (fail) {
+                throw new IOException("offline");
+            }
+            return name;
+        }
+    }
+
+    private static final Executor DIRECT = Runnable::run;
+
+    private File cacheFile;
+    private ManualExecutor executor;
+    private CountingLookup lookup;
+    private List<String> results;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheFile = File.createTempFile("area_names", ".tsv");
+        cacheFile.delete();
+        executor = new ManualExecutor();
+        lookup = new CountingLookup();
+        results = new ArrayList<>();
+    }
+
+    @After
+    public void tearDown() {
+        cacheFile.delete();
+    }
+
+    private AreaNameResolver.Callback recordResult() {
+        return (cell, name) -> results.add(name);
+    }
+
+    @Test
+    public void geohash_matchesKnownVectors() {
+        assertEquals("u4pruydqqvj", Geohash.encode(57.64911, 10.40744, 11));
+        assertEquals("ezs42", Geohash.encode(42.6, -5.6, 5));
+        assertEquals("wsqqqm", Geohash.encode(25.0330, 121.5654, 6));
+    }
+
+    @Test
+    public void nearbyPoints_shareOneLookup() {
+        AreaNameResolver resolver = new AreaNameResolver(lookup, executor, cacheFile, 16);
+        executor.runAll();
+
+        assertNull(resolver.resolve(25.03300, 121.56540, DIRECT, recordResult()));
+        // 同一格、查詢還沒完成：只排一次查詢，兩個 callback 都會收到結果
+        assertNull(resolver.resolve(25.03310, 121.56550, DIRECT, recordResult()));
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+
+        assertEquals(1, lookup.calls);
+        assertEquals(2, results.size());
+        assertEquals("臺北市 中正區", results.get(0));
+        assertEquals("臺北市 中正區", results.get(1));
+
+        // 之後同一格直接從快取回傳，不再排查詢
+        assertEquals("臺北市 中正區", resolver.resolve(25.03305, 121.56545, DIRECT, recordResult()));
+        assertTrue(executor.tasks.isEmpty());
+        assertEquals(1, lookup.calls);
+    }
+
+    @Test
+    public void differentCells_lookUpSeparately() {
+        AreaNameResolver resolver = new AreaNameResolver(lookup, executor, null, 16);
+        resolver.resolve(25.0330, 121.5654, DIRECT, recordResult());
+        resolver.resolve(25.0800, 121.5654, DIRECT, recordResult());
+        executor.runAll();
+
+        assertEquals(2, lookup.calls);
+        assertEquals(2, resolver.size());
+    }
+
+    @Test
+    public void failedLookup_isNotCachedAndRetried() {
+        AreaNameResolver resolver = new AreaNameResolver(lookup, executor, cacheFile, 16);
+        lookup.fail = true;
+        resolver.resolve(25.0330, 121.5654, DIRECT, recordResult());
+        executor.runAll();
+
+        assertEquals(1, results.size());
+        assertNull(results.get(0));
+        assertEquals(0, resolver.size());
+
+        lookup.fail = false;
+        assertNull(resolver.resolve(25.0330, 121.5654, DIRECT, recordResult()));
+        executor.runAll();
+        assertEquals(2, lookup.calls);
+        assertEquals("臺北市 中正區", results.get(1));
+    }
+
+    @Test
+    public void missingName_isNotCachedAndRetried() {
+        AreaNameResolver resolver = new AreaNameResolver(lookup, executor, cacheFile, 16);
+        lookup.name = null;
+        resolver.resolve(25.0330, 121.5654, DIRECT, recordResult());
+        executor.runAll();
+
+        assertNull(results.get(0));
+        assertEquals(0, resolver.size());
+        assertFalse(cacheFile.exists());
+
+        lookup.name = "臺北市 信義區";
+        resolver.resolve(25.0330, 121.5654, DIRECT, recordResult());
+        executor.runAll();
+        assertEquals(2, lookup.calls);
+        assertEquals("臺北市 信義區", results.get(1));
+    }
+
+    @Test
+    public void cache_survivesReload() {
+        AreaNameResolver first = new AreaNameResolver(lookup, DIRECT, cacheFile, 16);
+        first.resolve(25.0330, 121.5654, DIRECT, recordResult());
+        assertTrue(cacheFile.exists());
+
+        CountingLookup secondLookup = new CountingLookup();
+        AreaNameResolver second = new AreaNameResolver(secondLookup, DIRECT, cacheFile, 16);
+        assertEquals("臺北市 中正區", second.resolve(25.0331, 121.5655, DIRECT, recordResult()));
+        assertEquals(0, secondLookup.calls);
+    }
+
+    @Test
+    public void lruCapacity_evictsOldestCells() {
+        AreaNameResolver resolver = new AreaNameResolver(lookup, DIRECT, null, 3);
+        for (int i = 0; i < 5; i++) {
+            resolver.resolve(25.0 + i * 0.1, 121.5, DIRECT, recordResult());
+        }
+        assertEquals(3, resolver.size());
+        assertEquals(5, lookup.calls);
+
+        // 最早的格子已經被清掉，需要重新查詢
+        assertNull(resolver.resolve(25.0, 121.5, DIRECT, recordResult()));
+        assertEquals(6, lookup.calls);
+    }
+}
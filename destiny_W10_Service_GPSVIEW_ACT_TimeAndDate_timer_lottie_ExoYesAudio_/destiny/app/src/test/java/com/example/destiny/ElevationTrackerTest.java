@@ -0,0 +1,78 @@
+package com.example.destiny;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * ElevationTracker 的本機單元測試
+ */
+public class ElevationTrackerTest {
+
+    @Test
+    public void noiseWithinThreshold_isIgnored() {
+        ElevationTracker tracker = new ElevationTracker();
+        tracker.start();
+        for (int i = 0; i < 600; i++) {
+            // ±0.8 公尺的氣壓雜訊
+            tracker.onBarometerAltitude(i * 1000L, 100 + (i % 2 == 0 ? 0.8 : -0.8));
+        }
+        assertEquals(0.0, tracker.getGain(), 0.0);
+        assertEquals(0.0, tracker.getLoss(), 0.0);
+    }
+
+    @Test
+    public void steadyClimbAndDescent_areAccumulated() {
+        ElevationTracker tracker = new ElevationTracker();
+        tracker.start();
+        long t = 0;
+        // 爬升 50 公尺，再下降 30 公尺，每秒 0.2 公尺
+        for (int i = 0; i <= 250; i++, t += 1000) {
+            tracker.onBarometerAltitude(t, 100 + i * 0.2);
+        }
+        for (int i = 0; i < 60; i++, t += 1000) {
+            tracker.onBarometerAltitude(t, 150);
+        }
+        for (int i = 0; i <= 150; i++, t += 1000) {
+            tracker.onBarometerAltitude(t, 150 - i * 0.2);
+        }
+        for (int i = 0; i < 60; i++, t += 1000) {
+            tracker.onBarometerAltitude(t, 120);
+        }
+        // 遲滯門檻內的殘差 (最多 1 公尺) 不會被累計
+        assertEquals(50.0, tracker.getGain(), 1.5);
+        assertEquals(30.0, tracker.getLoss(), 1.5);
+        assertEquals(120.0, tracker.getAltitude(), 0.5);
+    }
+
+    @Test
+    public void gpsAltitude_isIgnoredOnceBarometerIsAvailable() {
+        ElevationTracker tracker = new ElevationTracker();
+        tracker.start();
+        tracker.onGpsAltitude(0, 30);
+        tracker.onGpsAltitude(60_000, 80);
+        assertTrue(tracker.getGain() > 0);
+        assertFalse(tracker.isUsingBarometer());
+
+        double gpsGain = tracker.getGain();
+        tracker.onBarometerAltitude(61_000, 500);
+        tracker.onGpsAltitude(120_000, 200);
+        assertTrue(tracker.isUsingBarometer());
+        // 切換來源不會把兩種高度基準的差距算成爬升
+        assertEquals(gpsGain, tracker.getGain(), 0.0);
+        assertEquals(500.0, tracker.getAltitude(), 0.0);
+    }
+
+    @Test
+    public void paused_doesNotAccumulateAndReanchorsOnResume() {
+        ElevationTracker tracker = new ElevationTracker();
+        tracker.start();
+        tracker.onBarometerAltitude(0, 100);
+        tracker.setPaused(true);
+        tracker.onBarometerAltitude(60_000, 140);
+        tracker.setPaused(false);
+        tracker.onBarometerAltitude(120_000, 140);
+        tracker.onBarometerAltitude(180_000, 140);
+        assertEquals(0.0, tracker.getGain(), 0.0);
+    }
+}
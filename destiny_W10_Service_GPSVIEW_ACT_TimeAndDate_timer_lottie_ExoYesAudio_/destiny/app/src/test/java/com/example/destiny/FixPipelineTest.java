@@ -0,0 +1,103 @@
+package com.example.destiny;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 定位點清理管線 (跳點剔除 + 卡爾曼濾波) 的本機單元測試
+ */
+public class FixPipelineTest {
+
+    // 緯度 1 公尺約 0.000009 度
+    private static final double METER = 1.0 / 111_195.0;
+
+    @Test
+    public void speedOutlier_isRejected() {
+        OutlierRejectionFilter filter = new OutlierRejectionFilter();
+        FixFilter.Fix fix = new FixFilter.Fix();
+        assertTrue(filter.process(fix.set(25.0, 121.5, 0, 5f)));
+        assertTrue(filter.process(fix.set(25.0 + 3 * METER, 121.5, 1000, 5f)));
+        // 1 秒跳 300 公尺
+        assertFalse(filter.process(fix.set(25.0 + 303 * METER, 121.5, 2000, 5f)));
+        // 下一個正常的點仍然以上一個接受的點為準
+        assertTrue(filter.process(fix.set(25.0 + 9 * METER, 121.5, 3000, 5f)));
+    }
+
+    @Test
+    public void repeatedRejects_acceptNewPosition() {
+        OutlierRejectionFilter filter = new OutlierRejectionFilter();
+        FixFilter.Fix fix = new FixFilter.Fix();
+        filter.process(fix.set(25.0, 121.5, 0, 5f));
+        int accepted = 0;
+        for (int i = 1; i <= 6; i++) {
+            if (filter.process(fix.set(25.0 + 2000 * METER, 121.5, i * 1000L, 5f))) accepted++;
+        }
+        assertEquals(1, accepted);
+    }
+
+    @Test
+    public void poorAccuracy_isRejected() {
+        OutlierRejectionFilter filter = new OutlierRejectionFilter();
+        assertFalse(filter.process(new FixFilter.Fix().set(25.0, 121.5, 0, 250f)));
+    }
+
+    @Test
+    public void kalman_suppressesStationaryJitter() {
+        Random random = new Random(42);
+        TrackEngine raw = new TrackEngine(4096, 1.0);
+        TrackEngine filtered = new TrackEngine(4096, 1.0);
+        raw.start(0, 0, 0);
+        filtered.start(0, 0, 0);
+        FixPipeline pipeline = FixPipeline.createDefault();
+        FixFilter.Fix fix = new FixFilter.Fix();
+        for (int i = 0; i < 300; i++) {
+            double lat = 25.0 + random.nextGaussian() * 3 * METER;
+            double lon = 121.5 + random.nextGaussian() * 3 * METER;
+            raw.addFix(lat, lon, i * 1000L, 3f);
+            if (pipeline.process(fix.set(lat, lon, i * 1000L, 3f))) {
+                filtered.addFix(fix.latitude, fix.longitude, fix.timeMillis, fix.accuracy);
+            }
+        }
+        // 站著不動 5 分鐘：原始資料會累積上千公尺的假距離，濾波後至少少一半
+        assertTrue(raw.getTotalDistance() > 1000);
+        assertTrue("filtered " + filtered.getTotalDistance(), filtered.getTotalDistance() < raw.getTotalDistance() / 2);
+    }
+
+    @Test
+    public void kalman_tracksSteadyRunBetterThanRawFixes() {
+        Random random = new Random(7);
+        TrackEngine raw = new TrackEngine(4096, 1.0);
+        TrackEngine filtered = new TrackEngine(4096, 1.0);
+        raw.start(0, 0, 0);
+        filtered.start(0, 0, 0);
+        FixPipeline pipeline = FixPipeline.createDefault();
+        FixFilter.Fix fix = new FixFilter.Fix();
+        // 每秒 3 公尺往北跑 10 分鐘 (共 1800 公尺)，GPS 誤差 3 公尺
+        for (int i = 0; i <= 600; i++) {
+            double lat = 25.0 + (i * 3 + random.nextGaussian() * 3) * METER;
+            double lon = 121.5 + random.nextGaussian() * 3 * METER;
+            raw.addFix(lat, lon, i * 1000L, 3f);
+            if (pipeline.process(fix.set(lat, lon, i * 1000L, 3f))) {
+                filtered.addFix(fix.latitude, fix.longitude, fix.timeMillis, fix.accuracy);
+            }
+        }
+        double rawError = Math.abs(raw.getTotalDistance() - 1800);
+        double filteredError = Math.abs(filtered.getTotalDistance() - 1800);
+        assertTrue("raw " + raw.getTotalDistance() + " filtered " + filtered.getTotalDistance(),
+                filteredError < rawError / 4);
+        assertEquals(1800.0, filtered.getTotalDistance(), 1800 * 0.15);
+    }
+
+    @Test
+    public void kalman_weightsByAccuracy() {
+        KalmanFixFilter filter = new KalmanFixFilter();
+        FixFilter.Fix fix = new FixFilter.Fix();
+        filter.process(fix.set(25.0, 121.5, 0, 3f));
+        // 精度很差的點幾乎不影響位置
+        filter.process(fix.set(25.0 + 50 * METER, 121.5, 1000, 80f));
+        assertEquals(25.0, fix.latitude, 2 * METER);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.destiny;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * GeoDistance 的微基準測試 (JMH 風格：先暖機，再量測多輪取最佳值)
+ *
+ * 預設不執行，需要時使用：./gradlew testDebugUnitTest -Pbench --tests "*GeoDistanceBenchmark"
+ */
+public class GeoDistanceBenchmark {
+
+    private static final int POINTS = 10_000;
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int MEASURE_ROUNDS = 20;
+
+    private interface Kernel {
+        double run(double[] lats, double[] lons);
+    }
+
+    // 防止 JIT 把結果當成沒用到而整段刪除
+    private double sink;
+
+    @Test
+    public void compareKernels() {
+        Assume.assumeTrue(Boolean.getBoolean("destiny.bench"));
+
+        double[] lats = new double[POINTS];
+        double[] lons = new double[POINTS];
+        Random random = new Random(1);
+        lats[0] = 25.03;
+        lons[0] = 121.56;
+        for (int i = 1; i < POINTS; i++) {
+            // 模擬每 1~5 秒一個定位點的跑步軌跡
+            lats[i] = lats[i - 1] + (random.nextDouble() - 0.3) * 1e-4;
+            lons[i] = lons[i - 1] + (random.nextDouble() - 0.3) * 1e-4;
+        }
+        double[] out = new double[POINTS];
+
+        measure("vincenty (distanceTo)", lats, lons, (la, lo) -> {
+            double total = 0;
+            for (int i = 1; i < POINTS; i++) total += VincentyReference.distance(la[i - 1], lo[i - 1], la[i], lo[i]);
+            return total;
+        });
+        measure("haversine", lats, lons, (la, lo) -> {
+            double total = 0;
+            for (int i = 1; i < POINTS; i++) total += GeoDistance.haversine(la[i - 1], lo[i - 1], la[i], lo[i]);
+            return total;
+        });
+        measure("equirectangular", lats, lons, (la, lo) -> {
+            double total = 0;
+            for (int i = 1; i < POINTS; i++) total += GeoDistance.equirectangular(la[i - 1], lo[i - 1], la[i], lo[i]);
+            return total;
+        });
+        measure("GeoDistance.cumulative", lats, lons, (la, lo) -> GeoDistance.cumulative(la, lo, POINTS, out));
+        System.out.println("(sink " + sink + ")");
+    }
+
+    private void measure(String name, double[] lats, double[] lons, Kernel kernel) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += kernel.run(lats, lons);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            long start = System.nanoTime();
+            sink += kernel.run(lats, lons);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.println(String.format(Locale.US, "%-24s %8.1f ns/op", name, (double) best / (POINTS - 1)));
+    }
+}
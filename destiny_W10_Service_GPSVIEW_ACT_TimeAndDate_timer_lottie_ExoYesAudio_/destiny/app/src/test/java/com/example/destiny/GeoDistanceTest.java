@@ -0,0 +1,74 @@
+package com.example.destiny;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * GeoDistance 與 Location.distanceTo (Vincenty) 的誤差比較
+ */
+public class GeoDistanceTest {
+
+    private static final long SEED = 20251108L;
+
+    @Test
+    public void shortHops_matchDistanceToWithin1e5Relative() {
+        Random random = new Random(SEED);
+        double worst = 0;
+        for (int i = 0; i < 10_000; i++) {
+            // 台灣附近到高緯度地區，相鄰定位點約 0.5 ~ 500 公尺
+            double lat = -60 + random.nextDouble() * 120;
+            double lon = -180 + random.nextDouble() * 360;
+            double lat2 = lat + (random.nextDouble() - 0.5) * 0.009;
+            double lon2 = lon + (random.nextDouble() - 0.5) * 0.009;
+            double expected = VincentyReference.distance(lat, lon, lat2, lon2);
+            if (expected < 0.5) continue;
+            double actual = GeoDistance.distance(lat, lon, lat2, lon2);
+            worst = Math.max(worst, Math.abs(actual - expected) / expected);
+        }
+        assertTrue("worst relative error " + worst, worst < 1e-5);
+    }
+
+    @Test
+    public void longDistances_matchDistanceToWithin06Percent() {
+        Random random = new Random(SEED);
+        double worst = 0;
+        for (int i = 0; i < 10_000; i++) {
+            double lat = -70 + random.nextDouble() * 140;
+            double lon = -180 + random.nextDouble() * 360;
+            double lat2 = Math.max(-80, Math.min(80, lat + (random.nextDouble() - 0.5) * 10));
+            double lon2 = lon + (random.nextDouble() - 0.5) * 10;
+            double expected = VincentyReference.distance(lat, lon, lat2, lon2);
+            if (expected < 1) continue;
+            double actual = GeoDistance.distance(lat, lon, lat2, lon2);
+            worst = Math.max(worst, Math.abs(actual - expected) / expected);
+        }
+        assertTrue("worst relative error " + worst, worst < 6e-3);
+    }
+
+    @Test
+    public void knownDistance_taipeiToKaohsiung() {
+        // 台北車站到高雄車站，distanceTo 約 297 公里
+        double expected = VincentyReference.distance(25.0478, 121.5170, 22.6394, 120.3024);
+        assertEquals(expected, GeoDistance.distance(25.0478, 121.5170, 22.6394, 120.3024), expected * 6e-3);
+    }
+
+    @Test
+    public void cumulative_sumsSegments() {
+        double[] lats = {25.0, 25.001, 25.002, 25.002};
+        double[] lons = {121.5, 121.5, 121.501, 121.502};
+        double[] out = new double[lats.length];
+        double total = GeoDistance.cumulative(lats, lons, lats.length, out);
+
+        double expected = 0;
+        for (int i = 1; i < lats.length; i++) {
+            expected += GeoDistance.distance(lats[i - 1], lons[i - 1], lats[i], lons[i]);
+            assertEquals(expected, out[i], 1e-9);
+        }
+        assertEquals(0.0, out[0], 0.0);
+        assertEquals(expected, total, 1e-9);
+        assertEquals(0.0, GeoDistance.cumulative(lats, lons, 0, null), 0.0);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.destiny;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * PackedTrack 的本機單元測試
+ */
+public class PackedTrackTest {
+
+    @Test
+    public void add_roundsToE7AndGrows() {
+        PackedTrack track = new PackedTrack(2);
+        for (int i = 0; i < 1000; i++) {
+            track.add(25.0 + i * 1e-5, 121.5 - i * 1e-5);
+        }
+        assertEquals(1000, track.size());
+        for (int i = 0; i < 1000; i++) {
+            // E7 的解析度是 1e-7 度，誤差不超過半個單位
+            assertEquals(25.0 + i * 1e-5, track.getLatitude(i), 0.5e-7);
+            assertEquals(121.5 - i * 1e-5, track.getLongitude(i), 0.5e-7);
+        }
+        assertEquals(250_000_000, track.getLatitudeE7(0));
+        assertEquals(1_215_000_000, track.getLongitudeE7(0));
+    }
+
+    @Test
+    public void extremeCoordinates_fitInInt() {
+        PackedTrack track = new PackedTrack();
+        track.add(-90.0, -180.0);
+        track.add(90.0, 180.0);
+        assertEquals(-900_000_000, track.getLatitudeE7(0));
+        assertEquals(-1_800_000_000, track.getLongitudeE7(0));
+        assertEquals(90.0, track.getLatitude(1), 0.0);
+        assertEquals(180.0, track.getLongitude(1), 0.0);
+    }
+
+    @Test
+    public void clear_resetsSize() {
+        PackedTrack track = new PackedTrack();
+        track.add(25.0, 121.5);
+        track.clear();
+        assertEquals(0, track.size());
+        track.add(26.0, 122.5);
+        assertEquals(26.0, track.getLatitude(0), 0.0);
+    }
+
+    @Test
+    public void addRange_appendsSliceAndGrows() {
+        PackedTrack source = new PackedTrack();
+        for (int i = 0; i < 500; i++) {
+            source.add(i * 1e-3, -i * 1e-3);
+        }
+        PackedTrack dest = new PackedTrack(1);
+        dest.add(1.0, 2.0);
+        dest.addRange(source, 100, 500);
+        assertEquals(401, dest.size());
+        assertEquals(1.0, dest.getLatitude(0), 0.0);
+        for (int i = 100; i < 500; i++) {
+            assertEquals(source.getLatitudeE7(i), dest.getLatitudeE7(i - 99));
+            assertEquals(source.getLongitudeE7(i), dest.getLongitudeE7(i - 99));
+        }
+        dest.addRange(source, 500, 500);
+        assertEquals(401, dest.size());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void addRange_outOfRange_throws() {
+        PackedTrack source = new PackedTrack();
+        source.add(25.0, 121.5);
+        new PackedTrack().addRange(source, 0, 2);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_outOfRange_throws() {
+        PackedTrack track = new PackedTrack();
+        track.add(25.0, 121.5);
+        track.getLatitudeE7(1);
+    }
+}
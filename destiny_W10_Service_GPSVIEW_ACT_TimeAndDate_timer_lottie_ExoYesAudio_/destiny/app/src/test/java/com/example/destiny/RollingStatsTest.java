@@ -0,0 +1,82 @@
+package com.example.destiny;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * RollingStats 的本機單元測試
+ */
+public class RollingStatsTest {
+
+    @Test
+    public void currentPace_usesOnlyTheTimeWindow() {
+        RollingStats stats = new RollingStats(30_000);
+        stats.start(0, 0);
+        // 前 60 秒 6:00/km (每秒 1/0.36 公尺)，之後 4:00/km
+        for (int s = 1; s <= 60; s++) {
+            stats.onProgress(s * (1000.0 / 360), s * 1000L);
+        }
+        assertEquals(360.0, stats.getCurrentPace(), 0.5);
+        for (int s = 61; s <= 120; s++) {
+            stats.onProgress(60 * (1000.0 / 360) + (s - 60) * (1000.0 / 240), s * 1000L);
+        }
+        assertEquals(240.0, stats.getCurrentPace(), 0.5);
+        // EMA 會落在兩者之間，但已經接近 4:00
+        assertTrue(stats.getSmoothedPace() < 250);
+    }
+
+    @Test
+    public void currentPace_unknownWhenStandingStill() {
+        RollingStats stats = new RollingStats(30_000);
+        stats.start(0, 0);
+        assertTrue(Double.isNaN(stats.getCurrentPace()));
+        stats.onProgress(5, 5_000);
+        assertTrue(Double.isNaN(stats.getCurrentPace()));
+        stats.onProgress(50, 20_000);
+        assertEquals(400.0, stats.getCurrentPace(), 1e-9);
+        assertEquals(400.0, stats.getCurrentPace(40_000), 1e-9);
+        assertTrue(Double.isNaN(stats.getCurrentPace(60_000)));
+    }
+
+    @Test
+    public void bestKm_interpolatesAndKeepsMinimum() {
+        RollingStats stats = new RollingStats();
+        stats.start(0, 0);
+        assertEquals(-1, stats.getBestKmMillis());
+        // 前 1 公里 5:00，接著 500 公尺 4:00/km
+        stats.onProgress(500, 150_000);
+        stats.onProgress(1000, 300_000);
+        assertEquals(300_000, stats.getBestKmMillis());
+        stats.onProgress(1500, 420_000);
+        // 最後 1 公里：500 公尺 150 秒 + 500 公尺 120 秒
+        assertEquals(270_000, stats.getBestKmMillis());
+        // 變慢不會影響最佳成績
+        stats.onProgress(2000, 700_000);
+        assertEquals(270_000, stats.getBestKmMillis());
+    }
+
+    @Test
+    public void zones_accumulateTimePerPace() {
+        RollingStats stats = new RollingStats();
+        stats.start(0, 0);
+        stats.onProgress(100, 23_000);   // 3:50/km
+        stats.onProgress(200, 56_000);   // 5:30/km
+        stats.onProgress(300, 146_000);  // 9:00/km
+        long[] zones = stats.copyZoneMillis();
+        assertEquals(RollingStats.ZONE_LIMITS_SEC_PER_KM.length + 1, zones.length);
+        assertEquals(23_000, zones[0]);
+        assertEquals(33_000, zones[2]);
+        assertEquals(90_000, zones[zones.length - 1]);
+    }
+
+    @Test
+    public void window_growsForHighSamplingRates() {
+        RollingStats stats = new RollingStats(30_000);
+        stats.start(0, 0);
+        for (int i = 1; i <= 1000; i++) {
+            stats.onProgress(i * 0.1, i * 100L);
+        }
+        assertEquals(1000.0, stats.getCurrentPace(), 1e-6);
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.destiny;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * RunJournal 的本機單元測試：模擬行程被砍掉後重新開啟日誌
+ */
+public class RunJournalTest {
+
+    private File journalFile;
+
+    @Before
+    public void setUp() throws IOException {
+        journalFile = File.createTempFile("run_journal", ".bin");
+        journalFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        journalFile.delete();
+    }
+
+    @Test
+    public void replay_restoresStartAndFixes() throws IOException {
+        RunJournal journal = RunJournal.open(journalFile);
+        journal.beginRun(1000L, 250.0, 60_000L);
+        journal.appendFix(25.0, 121.5, 2000L, 4f);
+        journal.appendFix(25.0001, 121.5, 3000L, 5f);
+        journal.appendLap(3500L);
+        // 不呼叫 close()，模擬行程直接被砍掉
+
+        RecordingReplay replay = new RecordingReplay();
+        RunJournal reopened = RunJournal.open(journalFile);
+        assertTrue(reopened.replay(replay));
+        assertEquals(1000L, replay.baseTime);
+        assertEquals(250.0, replay.distanceOffset, 0.0);
+        assertEquals(60_000L, replay.timeOffset);
+        assertEquals(2, replay.fixes);
+        assertEquals(25.0001, replay.lastLatitude, 0.0);
+        assertEquals(5f, replay.lastAccuracy, 0f);
+        assertEquals(1, replay.laps);
+        reopened.close();
+    }
+
+    @Test
+    public void replay_restoresPausedTimer() throws IOException {
+        RunJournal journal = RunJournal.open(journalFile);
+        journal.beginRun(1000L, 0, 0);
+        journal.appendFix(25.0, 121.5, 2000L, 4f);
+        journal.appendPause(31_000L);
+        journal.appendResume(91_000L);
+        journal.appendPause(101_000L);
+
+        TrackEngine engine = new TrackEngine();
+        RunJournal reopened = RunJournal.open(journalFile);
+        assertTrue(reopened.replay(new RunJournal.Replay() {
+            @Override
+            public void onStart(long baseTime, double distanceOffset, long timeOffset) {
+                engine.start(baseTime, distanceOffset, timeOffset);
+            }
+
+            @Override
+            public void onFix(double latitude, double longitude, long timeMillis, float accuracy) {
+                engine.addFix(latitude, longitude, timeMillis, accuracy);
+            }
+
+            @Override
+            public void onPause(long timeMillis) {
+                engine.pause(timeMillis);
+            }
+
+            @Override
+            public void onResume(long timeMillis) {
+                engine.resume(timeMillis);
+            }
+
+            @Override
+            public void onLap(long timeMillis) {
+            }
+        }));
+        // 30 秒 + 10 秒，暫停中的 60 秒不算
+        assertTrue(engine.isPaused());
+        assertEquals(40_000L, engine.getElapsedMillis(500_000L));
+        reopened.close();
+    }
+
+    @Test
+    public void clear_leavesNothingToRecover() throws IOException {
+        RunJournal journal = RunJournal.open(journalFile);
+        journal.beginRun(1000L, 0, 0);
+        journal.appendFix(25.0, 121.5, 2000L, 4f);
+        journal.clear();
+        journal.close();
+
+        RunJournal reopened = RunJournal.open(journalFile);
+        assertFalse(reopened.replay(new RecordingReplay()));
+        reopened.close();
+    }
+
+    @Test
+    public void newRun_ignoresRecordsOfPreviousRun() throws IOException {
+        RunJournal journal = RunJournal.open(journalFile);
+        journal.beginRun(1000L, 0, 0);
+        for (int i = 0; i < 10; i++) {
+            journal.appendFix(25.0, 121.5, i, 4f);
+        }
+        journal.beginRun(5000L, 0, 0);
+        journal.appendFix(24.0, 120.0, 6000L, 3f);
+
+        RecordingReplay replay = new RecordingReplay();
+        RunJournal reopened = RunJournal.open(journalFile);
+        assertTrue(reopened.replay(replay));
+        assertEquals(5000L, replay.baseTime);
+        assertEquals(1, replay.fixes);
+
+        // 還原後繼續寫入，要接在最後一筆後面
+        reopened.appendFix(24.1, 120.0, 7000L, 3f);
+        RecordingReplay again = new RecordingReplay();
+        assertTrue(RunJournal.open(journalFile).replay(again));
+        assertEquals(2, again.fixes);
+        reopened.close();
+    }
+
+    @Test
+    public void journal_growsBeyondInitialMapping() throws IOException {
+        RunJournal journal = RunJournal.open(journalFile);
+        journal.beginRun(0L, 0, 0);
+        int count = 10_000; // 超過初始 64 KB 的映射範圍
+        for (int i = 0; i < count; i++) {
+            journal.appendFix(25.0 + i * 1e-5, 121.5, i, 4f);
+        }
+        journal.flush();
+
+        RecordingReplay replay = new RecordingReplay();
+        assertTrue(RunJournal.open(journalFile).replay(replay));
+        assertEquals(count, replay.fixes);
+        journal.close();
+    }
+
+    private static final class RecordingReplay implements RunJournal.Replay {
+        long baseTime;
+        double distanceOffset;
+        long timeOffset;
+        int fixes;
+        double lastLatitude;
+        float lastAccuracy;
+        int pauses;
+        int resumes;
+        int laps;
+
+        @Override
+        public void onStart(long baseTime, double distanceOffset, long timeOffset) {
+            this.baseTime = baseTime;
+            this.distanceOffset = distanceOffset;
+            this.timeOffset = timeOffset;
+        }
+
+        @Override
+        public void onFix(double latitude, double longitude, long timeMillis, float accuracy) {
+            fixes++;
+            lastLatitude = latitude;
+            lastAccuracy = accuracy;
+        }
+
+        @Override
+        public void onPause(long timeMillis) {
+            pauses++;
+        }
+
+        @Override
+        public void onResume(long timeMillis) {
+            resumes++;
+        }
+
+        @Override
+        public void onLap(long timeMillis) {
+            laps++;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.destiny;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.*;
+
+/**
+ * RunStateChannel 的本機單元測試
+ */
+public class RunStateChannelTest {
+
+    private final Queue<Runnable> posted = new ArrayDeque<>();
+    private final RunStateChannel channel = new RunStateChannel(posted::add);
+
+    private static RunSnapshot snapshot(double distance, long fixCount) {
+        return new RunSnapshot(distance, 1000, false, 0, 0, fixCount,
+                true, 25.0, 121.5, "臺北市", Double.NaN, -1, 0, 0);
+    }
+
+    private void runPosted() {
+        Runnable task;
+        while ((task = posted.poll()) != null) {
+            task.run();
+        }
+    }
+
+    @Test
+    public void withoutListeners_nothingIsPosted() {
+        assertTrue(channel.publish(snapshot(10, 1)));
+        assertTrue(channel.publish(snapshot(20, 2)));
+        assertTrue(posted.isEmpty());
+        assertEquals(2, channel.getLatest().fixCount);
+    }
+
+    @Test
+    public void newListener_catchesUpWithLatestOnly() {
+        channel.publish(snapshot(10, 1));
+        channel.publish(snapshot(20, 2));
+        channel.publish(snapshot(30, 3));
+
+        List<RunSnapshot> received = new ArrayList<>();
+        channel.addListener(received::add);
+        assertEquals(1, received.size());
+        assertEquals(3, received.get(0).fixCount);
+    }
+
+    @Test
+    public void burstOfUpdates_isDeliveredOnceWithLatest() {
+        List<RunSnapshot> received = new ArrayList<>();
+        channel.addListener(received::add);
+        channel.publish(snapshot(10, 1));
+        channel.publish(snapshot(20, 2));
+        assertEquals(1, posted.size());
+        runPosted();
+
+        assertEquals(1, received.size());
+        assertEquals(2, received.get(0).fixCount);
+        // 內容沒變的快照不會再通知
+        assertFalse(channel.publish(snapshot(20, 2)));
+        assertTrue(posted.isEmpty());
+    }
+
+    @Test
+    public void removedListener_stopsReceiving() {
+        List<RunSnapshot> received = new ArrayList<>();
+        RunStateChannel.Listener listener = received::add;
+        channel.addListener(listener);
+        channel.removeListener(listener);
+        channel.publish(snapshot(10, 1));
+        runPosted();
+        assertTrue(received.isEmpty());
+    }
+}
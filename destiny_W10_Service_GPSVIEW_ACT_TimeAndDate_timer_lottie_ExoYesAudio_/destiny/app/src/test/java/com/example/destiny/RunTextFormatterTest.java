@@ -0,0 +1,86 @@
+package com.example.destiny;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * RunTextFormatter 的本機單元測試
+ */
+public class RunTextFormatterTest {
+
+    private final char[] buffer = new char[RunTextFormatter.BUFFER_SIZE];
+
+    private String duration(long millis) {
+        return new String(buffer, 0, RunTextFormatter.formatDuration(millis, buffer));
+    }
+
+    private String distance(double meters) {
+        return new String(buffer, 0, RunTextFormatter.formatDistance(meters, buffer));
+    }
+
+    private String pace(double secondsPerKm) {
+        return new String(buffer, 0, RunTextFormatter.formatPace(secondsPerKm, buffer));
+    }
+
+    @Test
+    public void duration_underAnHour() {
+        assertEquals("00:00:00.00", duration(0));
+        assertEquals("00:00:00.09", duration(99));
+        assertEquals("00:01:05.43", duration(65_432));
+        assertEquals("00:59:59.99", duration(3_599_999));
+    }
+
+    @Test
+    public void duration_overAnHour_keepsSecondsWithinMinute() {
+        // 舊的結算畫面在超過一小時時秒數會算錯 (沒有扣掉小時)
+        assertEquals("01:00:00.00", duration(3_600_000));
+        assertEquals("01:02:03.45", duration(3_723_450));
+        assertEquals("12:34:56.78", duration(45_296_780));
+        assertEquals("123:00:01.00", duration(442_801_000));
+    }
+
+    @Test
+    public void duration_matchesStringFormatAcrossRange() {
+        for (long millis = 0; millis < 30L * 3_600_000; millis += 7_777) {
+            long totalSeconds = millis / 1000;
+            String expected = String.format(Locale.US, "%02d:%02d:%02d.%02d",
+                    totalSeconds / 3600, totalSeconds / 60 % 60, totalSeconds % 60, millis / 10 % 100);
+            assertEquals(expected, duration(millis));
+            assertEquals(expected, RunTextFormatter.formatDuration(millis));
+        }
+    }
+
+    @Test
+    public void duration_wholeSecondsWithoutHundredths() {
+        assertEquals("01:02:03", new String(buffer, 0, RunTextFormatter.formatDuration(3_723_999, buffer, false)));
+        assertEquals("00:00:00", new String(buffer, 0, RunTextFormatter.formatDuration(999, buffer, false)));
+    }
+
+    @Test
+    public void distance_roundsToWholeMeters() {
+        assertEquals("0", distance(0));
+        assertEquals("0", distance(0.4));
+        assertEquals("1", distance(0.5));
+        assertEquals("1234", distance(1234.4));
+        assertEquals("42195", distance(42_195));
+    }
+
+    @Test
+    public void pace_minutesAndSeconds() {
+        assertEquals("配速 5'30\"/km", pace(330));
+        assertEquals("配速 4'05\"/km", pace(244.6));
+        assertEquals("配速 12'00\"/km", pace(720));
+        assertEquals("配速 --'--\"/km", pace(Double.NaN));
+        assertEquals("配速 --'--\"/km", pace(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void shorterTextAfterLongerText_usesReturnedLength() {
+        assertEquals("123:00:01.00", duration(442_801_000));
+        assertEquals("配速 5'30\"/km", pace(330));
+        assertEquals("7", distance(7));
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.destiny;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * SamplingScheduler 的本機單元測試
+ */
+public class SamplingSchedulerTest {
+
+    private static final double LAT = 25.0;
+    private static final double LON = 121.5;
+
+    /**
+     * 從 fromMillis 開始每秒餵一個固定速度的定位點 (含 toMillis)
+     * @return 最後一次 onFix 是否改變了設定
+     */
+    private static boolean feed(SamplingScheduler scheduler, long fromMillis, long toMillis, double speed) {
+        boolean changed = false;
+        for (long t = fromMillis; t <= toMillis; t += 1000) {
+            changed = scheduler.onFix(t, LAT, LON, speed);
+        }
+        return changed;
+    }
+
+    private static SamplingScheduler stationaryScheduler() {
+        SamplingScheduler scheduler = new SamplingScheduler();
+        feed(scheduler, 0, 20_000, 0.1);
+        assertEquals(SamplingScheduler.Profile.STATIONARY, scheduler.getProfile());
+        return scheduler;
+    }
+
+    @Test
+    public void startsWalking() {
+        assertEquals(SamplingScheduler.Profile.WALKING, new SamplingScheduler().getProfile());
+    }
+
+    @Test
+    public void running_switchesOnlyAfterDwellTime() {
+        SamplingScheduler scheduler = new SamplingScheduler();
+        feed(scheduler, 0, 14_000, 3.0);
+        assertEquals(SamplingScheduler.Profile.WALKING, scheduler.getProfile());
+
+        assertTrue(scheduler.onFix(15_000, LAT, LON, 3.0));
+        assertEquals(SamplingScheduler.Profile.RUNNING, scheduler.getProfile());
+    }
+
+    @Test
+    public void stationary_switchesOnlyAfterDwellTime() {
+        SamplingScheduler scheduler = new SamplingScheduler();
+        // 第一個樣本還算不出標準差，從第二個樣本 (1 秒) 才開始算停留時間
+        feed(scheduler, 0, 15_000, 0.1);
+        assertEquals(SamplingScheduler.Profile.WALKING, scheduler.getProfile());
+        assertTrue(scheduler.onFix(16_000, LAT, LON, 0.1));
+        assertEquals(SamplingScheduler.Profile.STATIONARY, scheduler.getProfile());
+    }
+
+    @Test
+    public void leavingStationary_isImmediate() {
+        SamplingScheduler scheduler = stationaryScheduler();
+        assertTrue(scheduler.onFix(21_000, LAT, LON, 3.0));
+        assertEquals(SamplingScheduler.Profile.WALKING, scheduler.getProfile());
+    }
+
+    @Test
+    public void briefSlowdown_doesNotLeaveRunning() {
+        SamplingScheduler scheduler = new SamplingScheduler();
+        feed(scheduler, 0, 15_000, 3.0);
+        assertEquals(SamplingScheduler.Profile.RUNNING, scheduler.getProfile());
+
+        // 紅綠燈前慢下來幾秒，還沒滿停留時間就又加速
+        feed(scheduler, 16_000, 25_000, 0.8);
+        assertEquals(SamplingScheduler.Profile.RUNNING, scheduler.getProfile());
+        feed(scheduler, 26_000, 40_000, 3.0);
+        assertEquals(SamplingScheduler.Profile.RUNNING, scheduler.getProfile());
+    }
+
+    @Test
+    public void candidateTimer_restartsWhenBackOnCurrentProfile() {
+        SamplingScheduler scheduler = new SamplingScheduler();
+        feed(scheduler, 0, 10_000, 3.0);
+        // 降回走路速度讓候選設定重置，之後要重新累積完整的停留時間
+        feed(scheduler, 11_000, 20_000, 1.0);
+        assertEquals(SamplingScheduler.Profile.WALKING, scheduler.getProfile());
+        feed(scheduler, 21_000, 40_000, 3.0);
+        assertEquals(SamplingScheduler.Profile.RUNNING, scheduler.getProfile());
+    }
+
+    @Test
+    public void missingSpeed_isDerivedFromPositions() {
+        SamplingScheduler scheduler = new SamplingScheduler();
+        double stepDegrees = 3.0 / 111_195.0; // 每秒約 3 公尺
+        for (int i = 0; i <= 16; i++) {
+            scheduler.onFix(i * 1000L, LAT + i * stepDegrees, LON, Double.NaN);
+        }
+        assertEquals(3.0, scheduler.getSmoothedSpeed(), 0.1);
+        assertEquals(SamplingScheduler.Profile.RUNNING, scheduler.getProfile());
+    }
+
+    @Test
+    public void powerSaveMode_downgradesMovingButNotStationary() {
+        SamplingScheduler scheduler = new SamplingScheduler();
+        assertTrue(scheduler.setPowerSaveMode(true));
+        assertEquals(SamplingScheduler.Profile.BATTERY_SAVER, scheduler.getProfile());
+        assertFalse(scheduler.setPowerSaveMode(true));
+
+        SamplingScheduler still = stationaryScheduler();
+        assertFalse(still.setPowerSaveMode(true));
+        assertEquals(SamplingScheduler.Profile.STATIONARY, still.getProfile());
+    }
+
+    @Test
+    public void lowBattery_overridesPowerSaveAndMotion() {
+        SamplingScheduler scheduler = new SamplingScheduler();
+        feed(scheduler, 0, 15_000, 3.0);
+        scheduler.setPowerSaveMode(true);
+        assertTrue(scheduler.setBatteryLow(true));
+        assertEquals(SamplingScheduler.Profile.LOW_BATTERY, scheduler.getProfile());
+
+        assertTrue(scheduler.setBatteryLow(false));
+        assertEquals(SamplingScheduler.Profile.BATTERY_SAVER, scheduler.getProfile());
+        assertTrue(scheduler.setPowerSaveMode(false));
+        assertEquals(SamplingScheduler.Profile.RUNNING, scheduler.getProfile());
+    }
+
+    @Test
+    public void paused_overridesEverything() {
+        SamplingScheduler scheduler = new SamplingScheduler();
+        scheduler.setBatteryLow(true);
+        assertTrue(scheduler.setPaused(true));
+        assertEquals(SamplingScheduler.Profile.PAUSED, scheduler.getProfile());
+        // 暫停時的速度變化不會改變建議的設定
+        assertFalse(feed(scheduler, 0, 20_000, 3.0));
+        assertTrue(scheduler.setPaused(false));
+        assertEquals(SamplingScheduler.Profile.LOW_BATTERY, scheduler.getProfile());
+    }
+}
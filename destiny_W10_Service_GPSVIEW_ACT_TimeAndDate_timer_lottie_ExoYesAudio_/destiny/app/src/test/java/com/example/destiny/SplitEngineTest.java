@@ -0,0 +1,78 @@
+package com.example.destiny;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * SplitEngine 的本機單元測試
+ */
+public class SplitEngineTest {
+
+    @Test
+    public void split_interpolatesCrossingTime() {
+        SplitEngine splits = new SplitEngine();
+        splits.start(0, 0);
+        assertEquals(0, splits.onProgress(900, 270_000));
+        // 900 -> 1100 公尺花了 60 秒，1000 公尺剛好在中間
+        assertEquals(1, splits.onProgress(1100, 330_000));
+        assertEquals(1, splits.getSplitCount());
+        assertEquals(300_000, splits.getSplitMillis(0));
+
+        assertEquals(1, splits.onProgress(2000, 600_000));
+        assertEquals(300_000, splits.getSplitMillis(1));
+    }
+
+    @Test
+    public void longHop_completesSeveralSplits() {
+        SplitEngine splits = new SplitEngine(100);
+        splits.start(0, 0);
+        assertEquals(3, splits.onProgress(350, 70_000));
+        assertArrayEquals(new long[]{20_000, 20_000, 20_000}, splits.copySplitMillis());
+    }
+
+    @Test
+    public void resumeOffset_startsAtNextBoundary() {
+        SplitEngine splits = new SplitEngine();
+        splits.start(2500, 750_000);
+        assertEquals(1, splits.onProgress(3000, 900_000));
+        assertEquals(150_000, splits.getSplitMillis(0));
+    }
+
+    @Test
+    public void timeGoingBackwards_isClamped() {
+        SplitEngine splits = new SplitEngine();
+        splits.start(0, 0);
+        splits.onProgress(990, 300_000);
+        splits.onProgress(1010, 299_000);
+        assertEquals(300_000, splits.getSplitMillis(0));
+    }
+
+    @Test
+    public void laps_recordDistanceAndTimeSinceLastLap() {
+        SplitEngine splits = new SplitEngine();
+        splits.start(0, 0);
+        splits.onProgress(400, 120_000);
+        splits.markLap(400, 125_000);
+        splits.onProgress(1000, 300_000);
+        splits.markLap(1000, 300_000);
+
+        assertEquals(2, splits.getLapCount());
+        assertEquals(125_000, splits.getLapMillis(0));
+        assertEquals(400.0, splits.getLapMeters(0), 0.0);
+        assertEquals(175_000, splits.getLapMillis(1));
+        assertEquals(600.0, splits.getLapMeters(1), 0.0);
+        assertArrayEquals(new double[]{400, 600}, splits.copyLapMeters(), 0.0);
+    }
+
+    @Test
+    public void storage_growsBeyondInitialCapacity() {
+        SplitEngine splits = new SplitEngine(10);
+        splits.start(0, 0);
+        for (int i = 1; i <= 100; i++) {
+            splits.onProgress(i * 10, i * 3000L);
+        }
+        assertEquals(100, splits.getSplitCount());
+        assertEquals(3000, splits.getSplitMillis(99));
+    }
+}
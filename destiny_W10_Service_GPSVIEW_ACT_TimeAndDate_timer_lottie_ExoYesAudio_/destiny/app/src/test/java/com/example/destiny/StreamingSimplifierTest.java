@@ -0,0 +1,99 @@
+package com.example.destiny;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * StreamingSimplifier 的本機單元測試
+ */
+public class StreamingSimplifierTest {
+
+    // 緯度 1 公尺約 0.000009 度
+    private static final double METER = 1.0 / 111_195.0;
+
+    @Test
+    public void straightLine_keepsOnlyEndpointsWithinLookahead() {
+        StreamingSimplifier simplifier = new StreamingSimplifier(5.0, 1000);
+        for (int i = 0; i <= 500; i++) {
+            simplifier.add(25.0 + i * 3 * METER, 121.5, i * 1000L);
+        }
+        assertEquals(1, simplifier.getVertexCount());
+        double[] tail = new double[1];
+        assertTrue(simplifier.readTail((seq, latitude, longitude, time) -> tail[0] = latitude));
+        assertEquals(25.0 + 1500 * METER, tail[0], 1e-12);
+    }
+
+    @Test
+    public void corner_becomesVertex() {
+        StreamingSimplifier simplifier = new StreamingSimplifier(5.0, 1000);
+        // 往北 300 公尺，再往東 300 公尺
+        for (int i = 0; i <= 100; i++) {
+            simplifier.add(25.0 + i * 3 * METER, 121.5, i);
+        }
+        double lonMeter = METER / Math.cos(Math.toRadians(25.0 + 300 * METER));
+        for (int i = 1; i <= 100; i++) {
+            simplifier.add(25.0 + 300 * METER, 121.5 + i * 3 * lonMeter, 100 + i);
+        }
+        assertEquals(2, simplifier.getVertexCount());
+        // 轉角會在超出容許誤差前的最後一個點輸出，離真正的轉角不超過容許誤差 (頂點以 E7 儲存)
+        assertEquals(25.0 + 300 * METER, simplifier.getVertexLatitude(1), 1e-7);
+        assertEquals(121.5, simplifier.getVertexLongitude(1), 5 * lonMeter);
+    }
+
+    @Test
+    public void lookahead_isBounded() {
+        StreamingSimplifier simplifier = new StreamingSimplifier(5.0, 10);
+        for (int i = 0; i <= 100; i++) {
+            simplifier.add(25.0 + i * METER, 121.5, i);
+        }
+        // 起點 + 每累積 10 個候選點強制輸出一個頂點
+        assertEquals(10, simplifier.getVertexCount());
+    }
+
+    @Test
+    public void zigzagWithinTolerance_isRemoved() {
+        StreamingSimplifier simplifier = new StreamingSimplifier(5.0, 1000);
+        double lonMeter = METER / Math.cos(Math.toRadians(25.0));
+        for (int i = 0; i <= 1000; i++) {
+            double sideways = (i % 2 == 0 ? 2 : -2) * lonMeter;
+            simplifier.add(25.0 + i * 3 * METER, 121.5 + sideways, i);
+        }
+        assertEquals(1, simplifier.getVertexCount());
+    }
+
+    @Test
+    public void zeroToleranceWithLookaheadOne_keepsEveryPointButTail() {
+        StreamingSimplifier simplifier = new StreamingSimplifier(0, 1);
+        for (int i = 0; i < 5; i++) {
+            simplifier.add(25.0 + i * METER, 121.5, i);
+        }
+        assertEquals(4, simplifier.getVertexCount());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(25.0 + i * METER, simplifier.getVertexLatitude(i), 1e-7);
+            assertEquals(121.5, simplifier.getVertexLongitude(i), 1e-7);
+        }
+        assertTrue(simplifier.hasTail());
+        assertEquals(25.0 + 4 * METER, simplifier.getTailLatitude(), 1e-12);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getVertexLatitude_outOfRange_throws() {
+        StreamingSimplifier simplifier = new StreamingSimplifier();
+        simplifier.add(25.0, 121.5, 0);
+        simplifier.getVertexLatitude(1);
+    }
+
+    @Test
+    public void reset_clearsVerticesAndTail() {
+        StreamingSimplifier simplifier = new StreamingSimplifier(1.0, 2);
+        for (int i = 0; i < 9; i++) {
+            simplifier.add(25.0 + i * METER, 121.5, i);
+        }
+        assertTrue(simplifier.getVertexCount() > 1);
+
+        simplifier.reset();
+        assertEquals(0, simplifier.getVertexCount());
+        assertFalse(simplifier.readTail((seq, latitude, longitude, time) -> fail()));
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.destiny;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * TileArchive 的本機單元測試
+ */
+public class TileArchiveTest {
+
+    private File archiveFile;
+
+    @Before
+    public void setUp() throws IOException {
+        archiveFile = File.createTempFile("tiles", "." + TileArchive.FILE_EXTENSION);
+        archiveFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        archiveFile.delete();
+    }
+
+    private static byte[] tileBytes(int zoom, int x, int y) {
+        return ("tile " + zoom + "/" + x + "/" + y).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void roundTrip_findsEveryTileInAnyInsertionOrder() throws IOException {
+        try (TileArchive.Writer writer = new TileArchive.Writer(archiveFile, "Mapnik")) {
+            // 故意不依照 key 的順序加入
+            for (int zoom = 16; zoom >= 14; zoom--) {
+                for (int x = 20; x >= 0; x--) {
+                    for (int y = 0; y < 20; y++) {
+                        byte[] tile = tileBytes(zoom, 54000 + x, 28000 + y);
+                        writer.add(zoom, 54000 + x, 28000 + y, tile, tile.length);
+                    }
+                }
+            }
+            writer.finish();
+        }
+
+        try (TileArchive archive = TileArchive.open(archiveFile)) {
+            assertEquals("Mapnik", archive.getSourceName());
+            assertEquals(3 * 21 * 20, archive.getTileCount());
+            for (int zoom = 14; zoom <= 16; zoom++) {
+                for (int x = 0; x <= 20; x++) {
+                    for (int y = 0; y < 20; y++) {
+                        ByteBuffer tile = archive.getTile(zoom, 54000 + x, 28000 + y);
+                        assertNotNull(tile);
+                        byte[] bytes = new byte[tile.remaining()];
+                        tile.get(bytes);
+                        assertArrayEquals(tileBytes(zoom, 54000 + x, 28000 + y), bytes);
+                    }
+                }
+            }
+            assertNull(archive.getTile(17, 54000, 28000));
+            assertNull(archive.getTile(15, 54021, 28000));
+            assertFalse(archive.contains(14, 53999, 28000));
+        }
+    }
+
+    @Test
+    public void openTile_streamsContent() throws IOException {
+        byte[] tile = new byte[100_000];
+        for (int i = 0; i < tile.length; i++) {
+            tile[i] = (byte) i;
+        }
+        try (TileArchive.Writer writer = new TileArchive.Writer(archiveFile, "Mapnik")) {
+            writer.add(15, 1, 2, tile, tile.length);
+            writer.finish();
+        }
+        try (TileArchive archive = TileArchive.open(archiveFile);
+             InputStream in = archive.openTile(15, 1, 2)) {
+            byte[] read = new byte[tile.length];
+            int length = 0;
+            int n;
+            while ((n = in.read(read, length, read.length - length)) > 0) {
+                length += n;
+            }
+            assertEquals(tile.length, length);
+            assertEquals(-1, in.read());
+            assertArrayEquals(tile, read);
+            assertNull(archive.openTile(15, 2, 1));
+        }
+    }
+
+    @Test
+    public void duplicateTile_keepsLastOne() throws IOException {
+        try (TileArchive.Writer writer = new TileArchive.Writer(archiveFile, "Mapnik")) {
+            byte[] first = {1, 2, 3};
+            byte[] second = {4, 5};
+            writer.add(10, 5, 5, first, first.length);
+            writer.add(10, 5, 5, second, second.length);
+            writer.finish();
+        }
+        try (TileArchive archive = TileArchive.open(archiveFile)) {
+            assertEquals(1, archive.getTileCount());
+            ByteBuffer tile = archive.getTile(10, 5, 5);
+            assertEquals(2, tile.remaining());
+            assertEquals(4, tile.get(0));
+        }
+    }
+
+    @Test
+    public void closeWithoutFinish_leavesNoArchive() throws IOException {
+        try (TileArchive.Writer writer = new TileArchive.Writer(archiveFile, "Mapnik")) {
+            writer.add(10, 5, 5, new byte[]{1}, 1);
+        }
+        assertFalse(archiveFile.exists());
+        assertFalse(new File(archiveFile.getPath() + ".data").exists());
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsOtherFiles() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(archiveFile, "rw")) {
+            file.write("not an archive".getBytes(StandardCharsets.UTF_8));
+        }
+        TileArchive.open(archiveFile).close();
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.destiny;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * TileMemoryPolicy 與 TileCacheStats 的本機單元測試
+ */
+public class TileMemoryPolicyTest {
+
+    private static final int SDK_O = 26;
+
+    @Test
+    public void lowRamDevice_uses565AndSmallerShareOfHeap() {
+        TileMemoryPolicy lowRam = TileMemoryPolicy.forDevice(96, true, 720, 1280, false, SDK_O);
+        TileMemoryPolicy normal = TileMemoryPolicy.forDevice(256, false, 720, 1280, false, SDK_O);
+        assertEquals(TileMemoryPolicy.DecodeMode.RGB_565, lowRam.decodeMode);
+        assertEquals(TileMemoryPolicy.DecodeMode.ARGB_8888, normal.decodeMode);
+        // 96 MB 的 1/10，每張 128 KB
+        assertEquals(76, lowRam.tileCount);
+        assertTrue(lowRam.estimatedHeapBytes() <= 96L * 1024 * 1024 / 8);
+        assertTrue(normal.estimatedHeapBytes() <= 256L * 1024 * 1024 / 5);
+    }
+
+    @Test
+    public void smallHeap_isTreatedAsConstrained() {
+        TileMemoryPolicy policy = TileMemoryPolicy.forDevice(128, false, 1080, 1920, false, SDK_O);
+        assertEquals(TileMemoryPolicy.DecodeMode.RGB_565, policy.decodeMode);
+    }
+
+    @Test
+    public void tileCount_coversAtLeastOneScreen() {
+        // 很小的 heap、很大的螢幕：至少要放得下一個畫面 + 邊緣
+        TileMemoryPolicy policy = TileMemoryPolicy.forDevice(16, true, 1440, 3200, false, SDK_O);
+        int columns = (1440 + 255) / 256 + 1;
+        int rows = (3200 + 255) / 256 + 1;
+        assertEquals(columns * rows, policy.tileCount);
+    }
+
+    @Test
+    public void tileCount_isCapped() {
+        TileMemoryPolicy policy = TileMemoryPolicy.forDevice(1024, false, 1080, 1920, false, SDK_O);
+        assertEquals(256, policy.tileCount);
+        assertTrue(policy.overshoot >= 2);
+    }
+
+    @Test
+    public void hardwareBitmaps_onlyWhenAllowedAndSupported() {
+        assertEquals(TileMemoryPolicy.DecodeMode.HARDWARE,
+                TileMemoryPolicy.forDevice(256, false, 1080, 1920, true, SDK_O).decodeMode);
+        assertEquals(TileMemoryPolicy.DecodeMode.ARGB_8888,
+                TileMemoryPolicy.forDevice(256, false, 1080, 1920, true, 25).decodeMode);
+        TileMemoryPolicy hardware = TileMemoryPolicy.forDevice(96, true, 1080, 1920, true, SDK_O);
+        assertEquals(0, hardware.estimatedHeapBytes());
+    }
+
+    @Test
+    public void stats_countAndComputeHitRate() {
+        TileCacheStats stats = new TileCacheStats();
+        assertTrue(Double.isNaN(stats.getHitRate()));
+        stats.recordHit();
+        stats.recordHit();
+        stats.recordHit();
+        stats.recordMiss();
+        stats.recordEviction();
+        stats.recordDecode(true);
+        stats.recordDecode(false);
+        stats.recordDecode(false);
+        assertEquals(0.75, stats.getHitRate(), 1e-12);
+        assertEquals(1, stats.getEvictions());
+        assertEquals(1, stats.getPooledDecodes());
+        assertEquals(2, stats.getAllocatedDecodes());
+        stats.reset();
+        assertEquals(0, stats.getHits());
+        assertTrue(Double.isNaN(stats.getHitRate()));
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.destiny;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * TilePrecacher 的本機單元測試：用本機的 HTTP 伺服器代替真正的圖磚伺服器
+ */
+public class TilePrecacherTest {
+
+    // 台北附近的一小塊範圍
+    private static final double NORTH = 25.05, SOUTH = 25.03, EAST = 121.57, WEST = 121.55;
+
+    private HttpServer server;
+    private String urlTemplate;
+    private final AtomicInteger requests = new AtomicInteger();
+    private File archiveFile;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+            // 模擬伺服器缺圖
+            if (path.endsWith("/missing.png") || path.contains("/16/")) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = path.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        urlTemplate = "http://127.0.0.1:" + server.getAddress().getPort() + "/{z}/{x}/{y}.png";
+        archiveFile = File.createTempFile("precache", "." + TileArchive.FILE_EXTENSION);
+        archiveFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        archiveFile.delete();
+    }
+
+    @Test
+    public void tileMath_matchesKnownTiles() {
+        // 台北 101 附近在 zoom 15 的圖磚
+        assertEquals(27449, TilePrecacher.tileX(121.5645, 15));
+        assertEquals(14029, TilePrecacher.tileY(25.0340, 15));
+        assertEquals(0, TilePrecacher.tileX(-180, 0));
+        assertEquals(0, TilePrecacher.tileY(89.9, 3));
+        assertEquals(7, TilePrecacher.tileY(-89.9, 3));
+        assertEquals(1, TilePrecacher.countTiles(1, -1, 1, -1, 0, 0));
+    }
+
+    @Test
+    public void precache_writesEveryTileInRange() throws Exception {
+        long expected = TilePrecacher.countTiles(NORTH, SOUTH, EAST, WEST, 13, 15);
+        TilePrecacher precacher = new TilePrecacher(urlTemplate, "destiny-test", 1000, 1_000_000);
+        int[] lastProgress = new int[2];
+        TilePrecacher.Result result = precacher.precache(NORTH, SOUTH, EAST, WEST, 13, 15,
+                archiveFile, "Mapnik", (done, total) -> {
+                    lastProgress[0] = done;
+                    lastProgress[1] = total;
+                });
+
+        assertEquals(expected, result.tilesWritten);
+        assertEquals(0, result.tilesFailed);
+        assertFalse(result.byteBudgetReached);
+        assertEquals(expected, lastProgress[0]);
+        assertEquals(expected, lastProgress[1]);
+
+        int x = TilePrecacher.tileX(121.56, 15);
+        int y = TilePrecacher.tileY(25.04, 15);
+        try (TileArchive archive = TileArchive.open(archiveFile)) {
+            assertEquals("Mapnik", archive.getSourceName());
+            assertEquals(expected, archive.getTileCount());
+            ByteBuffer tile = archive.getTile(15, x, y);
+            byte[] bytes = new byte[tile.remaining()];
+            tile.get(bytes);
+            assertEquals("/15/" + x + "/" + y + ".png", new String(bytes, StandardCharsets.UTF_8));
+            // 範圍外的圖磚不在封存檔裡，地圖會改走網路
+            assertNull(archive.getTile(15, x + 100, y));
+        }
+    }
+
+    @Test
+    public void tileBudget_rejectsAreaBeforeDownloading() throws Exception {
+        long needed = TilePrecacher.countTiles(NORTH, SOUTH, EAST, WEST, 13, 17);
+        TilePrecacher precacher = new TilePrecacher(urlTemplate, null, (int) needed - 1, 1_000_000);
+        try {
+            precacher.precache(NORTH, SOUTH, EAST, WEST, 13, 17, archiveFile, "Mapnik", null);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // 預期
+        }
+        assertEquals(0, requests.get());
+        assertFalse(archiveFile.exists());
+    }
+
+    @Test
+    public void byteBudget_stopsAndKeepsLowerZooms() throws Exception {
+        long lowZoomTiles = TilePrecacher.countTiles(NORTH, SOUTH, EAST, WEST, 12, 13);
+        // 每張圖磚大約 16 bytes，容量只夠低 zoom 再多幾張
+        TilePrecacher precacher = new TilePrecacher(urlTemplate, null, 1000, lowZoomTiles * 20 + 40);
+        TilePrecacher.Result result = precacher.precache(NORTH, SOUTH, EAST, WEST, 12, 15,
+                archiveFile, "Mapnik", null);
+
+        assertTrue(result.byteBudgetReached);
+        assertTrue(result.bytesWritten <= lowZoomTiles * 20 + 40);
+        try (TileArchive archive = TileArchive.open(archiveFile)) {
+            assertEquals(result.tilesWritten, archive.getTileCount());
+            assertTrue(archive.contains(12, TilePrecacher.tileX(WEST, 12), TilePrecacher.tileY(NORTH, 12)));
+            assertTrue(archive.contains(13, TilePrecacher.tileX(EAST, 13), TilePrecacher.tileY(SOUTH, 13)));
+            assertFalse(archive.contains(15, TilePrecacher.tileX(EAST, 15), TilePrecacher.tileY(SOUTH, 15)));
+        }
+    }
+
+    @Test
+    public void missingTiles_areSkipped() throws Exception {
+        long zoom15 = TilePrecacher.countTiles(NORTH, SOUTH, EAST, WEST, 15, 15);
+        long zoom16 = TilePrecacher.countTiles(NORTH, SOUTH, EAST, WEST, 16, 16);
+        TilePrecacher precacher = new TilePrecacher(urlTemplate, null, 1000, 1_000_000);
+        TilePrecacher.Result result = precacher.precache(NORTH, SOUTH, EAST, WEST, 15, 16,
+                archiveFile, "Mapnik", null);
+        assertEquals(zoom15, result.tilesWritten);
+        assertEquals(zoom16, result.tilesFailed);
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.destiny;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * TilePrefetcher 的本機單元測試
+ */
+public class TilePrefetcherTest {
+
+    // 緯度 1 公尺約 0.000009 度
+    private static final double METER = 1.0 / 111_195.0;
+    private static final int ZOOM = 16;
+
+    private final List<int[]> fetched = new CopyOnWriteArrayList<>();
+    private TilePrefetcher prefetcher;
+
+    @After
+    public void tearDown() {
+        if (prefetcher != null) {
+            prefetcher.stop();
+        }
+    }
+
+    private TilePrefetcher.TileFetcher recordingFetcher(long bytes) {
+        return (zoom, x, y) -> {
+            fetched.add(new int[]{zoom, x, y});
+            return bytes;
+        };
+    }
+
+    /**
+     * 每秒一個定位點，往北跑
+     */
+    private void runNorth(int fixes, long intervalMillis, double metersPerFix) {
+        for (int i = 0; i < fixes; i++) {
+            prefetcher.onPosition(i * intervalMillis, 25.0 + i * metersPerFix * METER, 121.5);
+        }
+    }
+
+    @Test
+    public void runningNorth_fetchesTilesAhead() throws InterruptedException {
+        prefetcher = new TilePrefetcher(recordingFetcher(1000), 2, 10_000_000, 120_000);
+        // 小畫面：每個推算位置只需要少數幾張圖磚
+        prefetcher.setViewport(ZOOM, 256, 256);
+        runNorth(5, 1000, 4);
+        assertTrue(prefetcher.awaitIdle(5000));
+
+        assertFalse(fetched.isEmpty());
+        int currentY = TilePrecacher.tileY(25.0 + 16 * METER, ZOOM);
+        // 2 分鐘後大約在北邊 480 公尺，應該已經下載好那裡的圖磚
+        int aheadY = TilePrecacher.tileY(25.0 + (16 + 480) * METER, ZOOM);
+        assertTrue(aheadY < currentY);
+        boolean hasAhead = false;
+        for (int[] tile : fetched) {
+            assertEquals(ZOOM, tile[0]);
+            // 不會往南 (反方向) 抓
+            assertTrue(tile[2] <= currentY + 1);
+            if (tile[2] == aheadY) hasAhead = true;
+        }
+        assertTrue(hasAhead);
+    }
+
+    @Test
+    public void tilesAreNotFetchedTwice() throws InterruptedException {
+        prefetcher = new TilePrefetcher(recordingFetcher(1000), 2, 10_000_000, 120_000);
+        prefetcher.setViewport(ZOOM, 512, 512);
+        runNorth(10, 1000, 0.6);
+        assertTrue(prefetcher.awaitIdle(5000));
+        long distinct = fetched.stream().mapToLong(t -> TileArchive.key(t[0], t[1], t[2])).distinct().count();
+        assertEquals(fetched.size(), distinct);
+    }
+
+    @Test
+    public void standingStill_fetchesNothing() throws InterruptedException {
+        prefetcher = new TilePrefetcher(recordingFetcher(1000), 2, 10_000_000, 120_000);
+        for (int i = 0; i < 10; i++) {
+            prefetcher.onPosition(i * 1000L, 25.0 + (i % 2) * METER * 0.2, 121.5);
+        }
+        assertTrue(prefetcher.awaitIdle(5000));
+        assertTrue(fetched.isEmpty());
+    }
+
+    @Test
+    public void slowFixes_backOff() throws InterruptedException {
+        prefetcher = new TilePrefetcher(recordingFetcher(1000), 2, 10_000_000, 120_000);
+        // 每 20 秒才一個定位點
+        runNorth(5, 20_000, 60);
+        assertTrue(prefetcher.awaitIdle(5000));
+        assertTrue(fetched.isEmpty());
+    }
+
+    @Test
+    public void concurrency_isCapped() throws InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        prefetcher = new TilePrefetcher((zoom, x, y) -> {
+            int now = running.incrementAndGet();
+            maxRunning.accumulateAndGet(now, Math::max);
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            running.decrementAndGet();
+            return 0;
+        }, 2, 10_000_000, 120_000);
+        prefetcher.setViewport(ZOOM, 1080, 1920);
+        runNorth(3, 1000, 4);
+        // 兩條下載都卡在 release 上時，第三張圖磚不可能開始
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(2, running.get());
+        assertEquals(2, maxRunning.get());
+        release.countDown();
+        assertTrue(prefetcher.awaitIdle(5000));
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    public void bandwidth_isLimited() throws InterruptedException {
+        // 每秒 40 KB，每張 8 KB
+        prefetcher = new TilePrefetcher(recordingFetcher(8000), 2, 40_000, 120_000);
+        prefetcher.setViewport(ZOOM, 512, 512);
+        long start = System.nanoTime();
+        // 騎車的速度，推算的位置分散在好幾張圖磚上
+        runNorth(3, 1000, 10);
+        assertTrue(prefetcher.awaitIdle(30_000));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long bytes = fetched.size() * 8000L;
+        assertTrue(bytes > 80_000);
+        // 最多先用掉一秒的額度，之後不會超過限制
+        assertTrue("took " + seconds + "s for " + bytes + " bytes", seconds >= (bytes - 40_000 - 16_000) / 40_000.0);
+    }
+
+    @Test
+    public void disabled_stopsPendingWork() throws InterruptedException {
+        prefetcher = new TilePrefetcher(recordingFetcher(1000), 2, 10_000_000, 120_000);
+        prefetcher.setEnabled(false);
+        runNorth(5, 1000, 4);
+        assertTrue(prefetcher.awaitIdle(5000));
+        assertTrue(fetched.isEmpty());
+    }
+
+    @Test
+    public void stop_closesFetcher() {
+        AtomicInteger closed = new AtomicInteger();
+        prefetcher = new TilePrefetcher(new TilePrefetcher.TileFetcher() {
+            @Override
+            public long fetch(int zoom, int x, int y) {
+                return 0;
+            }
+
+            @Override
+            public void close() {
+                closed.incrementAndGet();
+            }
+        }, 2, 10_000_000, 120_000);
+        prefetcher.stop();
+        assertEquals(1, closed.get());
+        prefetcher = null;
+    }
+}
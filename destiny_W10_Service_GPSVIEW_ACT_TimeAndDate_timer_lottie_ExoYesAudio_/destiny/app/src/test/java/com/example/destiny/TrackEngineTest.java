@@ -0,0 +1,125 @@
+package com.example.destiny;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * TrackEngine 的本機單元測試 (不需要裝置)
+ */
+public class TrackEngineTest {
+
+    // 緯度 0.0001 度約 11.1 公尺
+    private static final double STEP = 0.0001;
+
+    @Test
+    public void firstFix_isOnlyStartingPoint() {
+        TrackEngine engine = new TrackEngine();
+        engine.start(0, 0, 0);
+        assertFalse(engine.addFix(25.0, 121.5, 1000, 5f));
+        assertEquals(1, engine.getFixCount());
+        assertEquals(0.0, engine.getTotalDistance(), 0.0);
+        assertTrue(engine.hasCurrentFix());
+    }
+
+    @Test
+    public void distance_accumulatesAndIgnoresNoise() {
+        TrackEngine engine = new TrackEngine();
+        engine.start(0, 0, 0);
+        engine.addFix(25.0, 121.5, 1000, 5f);
+        assertTrue(engine.addFix(25.0 + STEP, 121.5, 2000, 5f));
+        // 小於 2 公尺的抖動不算距離，但目前位置仍要更新
+        assertFalse(engine.addFix(25.0 + STEP + 0.00001, 121.5, 3000, 5f));
+        assertEquals(25.0 + STEP + 0.00001, engine.getCurrentLatitude(), 1e-12);
+        assertTrue(engine.addFix(25.0 + 2 * STEP, 121.5, 4000, 5f));
+
+        assertEquals(3, engine.getFixCount());
+        assertEquals(22.15, engine.getTotalDistance(), 0.05);
+    }
+
+    @Test
+    public void elapsed_includesResumeOffset() {
+        TrackEngine engine = new TrackEngine();
+        engine.start(10_000, 500, 60_000);
+        assertEquals(65_000, engine.getElapsedMillis(15_000));
+        assertEquals(500.0, engine.getTotalDistance(), 0.0);
+    }
+
+    @Test
+    public void pause_freezesTimerAndKeepsPausePointForDistance() {
+        TrackEngine engine = new TrackEngine();
+        engine.start(0, 0, 0);
+        engine.addFix(25.0, 121.5, 1000, 5f);
+        engine.pause(10_000);
+        assertEquals(10_000, engine.getElapsedMillis(50_000));
+
+        // 暫停中的定位點只更新目前位置
+        assertFalse(engine.addFix(25.0 + 5 * STEP, 121.5, 20_000, 5f));
+        assertEquals(0.0, engine.getTotalDistance(), 0.0);
+        assertEquals(1, engine.getFixCount());
+
+        engine.resume(60_000);
+        assertEquals(15_000, engine.getElapsedMillis(65_000));
+        // 繼續後的第一個點要從暫停的位置接著算
+        assertTrue(engine.addFix(25.0 + STEP, 121.5, 61_000, 5f));
+        assertEquals(11.08, engine.getTotalDistance(), 0.05);
+    }
+
+    @Test
+    public void ringBuffer_keepsMostRecentFixes() {
+        TrackEngine engine = new TrackEngine(4, 2.0);
+        engine.start(0, 0, 0);
+        for (int i = 0; i < 10; i++) {
+            engine.addFix(25.0 + i * STEP, 121.5, i * 1000L, 3f);
+        }
+        assertEquals(10, engine.getFixCount());
+        assertEquals(4, engine.getRetainedFixCount());
+        assertEquals(9000, engine.getTime(9));
+        assertEquals(25.0 + 6 * STEP, engine.getLatitude(6), 1e-12);
+        try {
+            engine.getLatitude(5);
+            fail("overwritten fix should not be readable");
+        } catch (IndexOutOfBoundsException expected) {
+            // 預期的例外
+        }
+    }
+
+    @Test
+    public void snapshot_reflectsCurrentState() {
+        TrackEngine engine = new TrackEngine();
+        engine.start(0, 0, 0);
+        engine.addFix(25.0, 121.5, 1000, 5f);
+        engine.addFix(25.0 + STEP, 121.5, 2000, 5f);
+        RunSnapshot snapshot = engine.snapshot(5000, "臺北市");
+        assertEquals(5000, snapshot.elapsedMillis);
+        assertEquals(2, snapshot.fixCount);
+        assertTrue(snapshot.hasLocation);
+        assertEquals(25.0 + STEP, snapshot.latitude, 1e-12);
+        assertEquals(engine.getTotalDistance(), snapshot.distanceMeters, 0.0);
+        assertEquals("臺北市", snapshot.locationName);
+        assertTrue(snapshot.sameStateAs(engine.snapshot(5000, "臺北市")));
+        assertFalse(snapshot.sameStateAs(engine.snapshot(5010, "臺北市")));
+    }
+
+    @Test
+    public void snapshot_elapsedAtAdvancesOnlyWhileRunning() {
+        TrackEngine engine = new TrackEngine();
+        engine.start(10_000, 0, 60_000);
+        RunSnapshot running = engine.snapshot(12_000, "臺北市");
+        assertEquals(62_000, running.elapsedMillis);
+        // 碼表在快照之後自己往前推算，和 TrackEngine 的計時一致
+        assertEquals(engine.getElapsedMillis(15_500), running.elapsedAt(15_500));
+        assertEquals(running.elapsedMillis, running.elapsedAt(12_000));
+
+        engine.pause(20_000);
+        RunSnapshot paused = engine.snapshot(25_000, "臺北市");
+        assertEquals(70_000, paused.elapsedAt(25_000));
+        assertEquals(70_000, paused.elapsedAt(99_000));
+        assertFalse(paused.sameStateAs(running));
+
+        engine.resume(30_000);
+        RunSnapshot resumed = engine.snapshot(30_000, "臺北市");
+        assertEquals(70_000, resumed.elapsedAt(30_000));
+        assertEquals(71_234, resumed.elapsedAt(31_234));
+    }
+}